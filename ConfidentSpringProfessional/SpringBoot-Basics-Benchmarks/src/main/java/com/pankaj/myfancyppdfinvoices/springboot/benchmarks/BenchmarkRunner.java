@@ -0,0 +1,46 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the benchmarks once per thread count and writes all results into one JMH JSON file, which can be
+ * compared between releases, e.g. with https://jmh.morethan.io.
+ * <pre>
+ * java -jar target/benchmarks.jar [result file] [thread counts] [benchmark regex]
+ * java -jar target/benchmarks.jar jmh-result.json 1,4,16 InvoiceServiceBenchmark
+ * </pre>
+ * Defaults are {@code jmh-result.json}, {@code 1,4,16} and all benchmarks.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, FileNotFoundException {
+        String resultFile = args.length > 0 ? args[0] : "jmh-result.json";
+        String threadCounts = args.length > 1 ? args[1] : "1,4,16";
+        String include = args.length > 2 ? args[2] : BenchmarkRunner.class.getPackage().getName() + ".*Benchmark";
+
+        List<RunResult> results = new ArrayList<>();
+        for (String threads : threadCounts.split(",")) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .build();
+            results.addAll(new Runner(options).run());
+        }
+
+        try (PrintStream out = new PrintStream(resultFile)) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        System.out.println("Results written to " + resultFile);
+    }
+}
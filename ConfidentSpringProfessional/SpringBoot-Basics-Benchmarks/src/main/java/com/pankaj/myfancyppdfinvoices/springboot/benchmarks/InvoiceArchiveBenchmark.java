@@ -0,0 +1,125 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import com.pankaj.myfancyppdfinvoices.springboot.MyfancyppdfinvoicesApplication;
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchiver;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InvoiceService#findById} for an invoice in the database and for one that was moved to the archive, with
+ * the invoices cache cleared before every call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceArchiveBenchmark {
+
+    /**
+     * A file-backed database with {@code tableSize} recent invoices, and as many old ones that were archived.
+     */
+    @State(Scope.Benchmark)
+    public static class Archive {
+
+        @Param({"10000", "100000"})
+        public int tableSize;
+
+        ConfigurableApplicationContext context;
+        InvoiceService invoiceService;
+        Cache invoicesCache;
+        UUID[] hot;
+        UUID[] archived;
+        private Path workDir;
+
+        @Setup
+        public void setUp() throws IOException {
+            workDir = Files.createTempDirectory("invoice-archive-benchmark-");
+            context = new SpringApplicationBuilder(MyfancyppdfinvoicesApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run("--spring.datasource.url=jdbc:h2:file:" + workDir.resolve("invoices"),
+                            "--spring.datasource.initialization-mode=always",
+                            "--pdf.rendering.output-dir=" + workDir.resolve("pdf"),
+                            "--invoices.archive.enabled=true",
+                            "--invoices.archive.interval=0",
+                            "--invoices.archive.dir=" + workDir.resolve("archive"),
+                            "--logging.level.root=warn");
+            invoiceService = context.getBean(InvoiceService.class);
+            invoicesCache = context.getBean(CacheManager.class).getCache(InvoiceService.INVOICES_CACHE);
+
+            Instant now = Instant.now();
+            archived = insert(now.minus(Duration.ofDays(365)));
+            hot = insert(now.minus(Duration.ofDays(1)));
+            context.getBean(InvoiceArchiver.class).archiveOlderThan(now.minus(Duration.ofDays(90)));
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            context.close();
+            FileSystemUtils.deleteRecursively(workDir);
+        }
+
+        // tableSize invoices made one millisecond apart, starting at the given time
+        private UUID[] insert(Instant start) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<UUID> ids = new ArrayList<>(tableSize);
+            for (int i = 0; i < tableSize; i++) {
+                UUID lowest = InvoiceIds.lowerBound(start.plusMillis(i));
+                ids.add(new UUID(lowest.getMostSignificantBits(),
+                        lowest.getLeastSignificantBits() | random.nextLong() & 0x3FFFFFFFFFFFFFFFL));
+            }
+            context.getBean(JdbcTemplate.class).batchUpdate(
+                    "insert into invoices (id,user_id,amount,pdf_url,status) values(?,?,?,?,'READY')",
+                    ids, 1000, (ps, id) -> {
+                        ps.setObject(1, id);
+                        ps.setString(2, "user" + random.nextInt(1000));
+                        ps.setInt(3, 10 + random.nextInt(41));
+                        ps.setString(4, "https://cdn.pankaj.com/images/default/sample.pdf");
+                    });
+            return ids.toArray(new UUID[0]);
+        }
+    }
+
+    @Benchmark
+    public Invoice findHot(Archive archive) {
+        archive.invoicesCache.clear();
+        return archive.invoiceService.findById(archive.hot[ThreadLocalRandom.current().nextInt(archive.hot.length)]);
+    }
+
+    @Benchmark
+    public Invoice findArchived(Archive archive) {
+        archive.invoicesCache.clear();
+        return archive.invoiceService.findById(archive.archived[ThreadLocalRandom.current().nextInt(archive.archived.length)]);
+    }
+}
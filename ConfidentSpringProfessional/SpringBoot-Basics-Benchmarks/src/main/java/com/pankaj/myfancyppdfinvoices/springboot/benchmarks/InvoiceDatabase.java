@@ -0,0 +1,74 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import com.pankaj.myfancyppdfinvoices.springboot.MyfancyppdfinvoicesApplication;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceGroupCommit;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceService;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The invoice application without its web layer, on an in-memory or a file-backed H2 database that
+ * is seeded with {@code tableSize} invoices. Every trial gets a fresh database.
+ */
+@State(Scope.Benchmark)
+public class InvoiceDatabase {
+
+    @Param({"mem", "file"})
+    public String database;
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    ConfigurableApplicationContext context;
+    InvoiceService invoiceService;
+    InvoiceGroupCommit invoiceGroupCommit;
+    Cache invoicesCache;
+    private Path workDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("invoice-benchmark-");
+        String url = "mem".equals(database)
+                ? "jdbc:h2:mem:" + workDir.getFileName() + ";DB_CLOSE_DELAY=-1"
+                : "jdbc:h2:file:" + workDir.resolve("invoices");
+
+        context = new SpringApplicationBuilder(MyfancyppdfinvoicesApplication.class)
+                .web(WebApplicationType.NONE)
+                // command line arguments, so they win over application.properties
+                .run("--spring.datasource.url=" + url,
+                        "--spring.datasource.initialization-mode=always",
+                        "--pdf.rendering.output-dir=" + workDir.resolve("pdf"),
+                        // create() must not stall on the PDF workers, the benchmark is about the request path
+                        "--pdf.rendering.queue-capacity=10000000",
+                        "--invoices.group-commit.enabled=true",
+                        "--logging.level.root=warn");
+        invoiceService = context.getBean(InvoiceService.class);
+        invoiceGroupCommit = context.getBean(InvoiceGroupCommit.class);
+        invoicesCache = context.getBean(CacheManager.class).getCache(InvoiceService.INVOICES_CACHE);
+
+        context.getBean(JdbcTemplate.class).update(
+                "insert into invoices (user_id,amount,pdf_url,status) "
+                        + "select 'user' || mod(x, 1000), 10 + mod(x, 41), 'https://cdn.pankaj.com/images/default/sample.pdf', 'READY' "
+                        + "from system_range(1, ?)", tableSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+}
@@ -0,0 +1,107 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU time to encode an invoice listing in each response encoding the API can negotiate, with and
+ * without gzip. {@link #main} prints the matching sizes on the wire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvoiceEncodingBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    @Param({"100", "10000"})
+    public int invoices;
+
+    private ObjectMapper objectMapper;
+    private List<Invoice> listing;
+
+    @Setup
+    public void setUp() {
+        objectMapper = objectMapper(format);
+        listing = listing(invoices);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return encode(objectMapper, listing, gzip);
+    }
+
+    static ObjectMapper objectMapper(String format) {
+        switch (format) {
+            case "smile":
+                return Jackson2ObjectMapperBuilder.smile().build();
+            case "cbor":
+                return Jackson2ObjectMapperBuilder.cbor().build();
+            default:
+                return Jackson2ObjectMapperBuilder.json().build();
+        }
+    }
+
+    static List<Invoice> listing(int invoices) {
+        List<Invoice> listing = new ArrayList<>(invoices);
+        for (int i = 0; i < invoices; i++) {
+            Invoice invoice = new Invoice("user" + i % 1000, 10 + i % 41, "https://cdn.pankaj.com/images/default/sample.pdf");
+            invoice.setStatus(InvoiceStatus.READY);
+            listing.add(invoice);
+        }
+        return listing;
+    }
+
+    static byte[] encode(ObjectMapper objectMapper, List<Invoice> listing, boolean gzip) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(listing.size() * 128);
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes, 8192) : bytes) {
+            objectMapper.writeValue(out, listing);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Prints the bytes on the wire for every combination the benchmark measures, these don't need JMH:
+     * {@code java -cp target/benchmarks.jar com.pankaj.myfancyppdfinvoices.springboot.benchmarks.InvoiceEncodingBenchmark}
+     */
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-6s %-5s %8s %12s %10s%n", "format", "gzip", "invoices", "bytes", "per invoice");
+        for (int invoices : new int[]{100, 10000}) {
+            List<Invoice> listing = listing(invoices);
+            for (String format : new String[]{"json", "smile", "cbor"}) {
+                for (boolean gzip : new boolean[]{false, true}) {
+                    int size = encode(objectMapper(format), listing, gzip).length;
+                    System.out.printf("%-6s %-5s %8d %12d %10.1f%n", format, gzip, invoices, size, (double) size / invoices);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Insert rate into a file-backed invoices table that already holds {@code tableSize} rows, with random ids from
+ * the database (read back as generated keys, how create() used to work) and with ids made by the application,
+ * either random or time-ordered. Scores are per inserted row; the batch benchmarks insert {@value #BATCH_SIZE}
+ * rows per call, like createAll.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InvoiceIdBenchmark {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final String INSERT = "insert into invoices (id,user_id,amount,status) values(?,?,?,?)";
+
+    @Param({"100000", "1000000"})
+    public int tableSize;
+
+    private Path workDir;
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("invoice-id-benchmark-");
+        dataSource = new SingleConnectionDataSource("jdbc:h2:file:" + workDir.resolve("invoices"), "sa", "", true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // the rows already there have random ids, as in any table that has been around before time-ordered ids
+        jdbcTemplate.update("insert into invoices (user_id,amount,status) "
+                + "select 'user' || mod(x, 1000), 10 + mod(x, 41), 'READY' from system_range(1, ?)", tableSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        dataSource.destroy();
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public Object databaseIdWithGeneratedKeys() {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into invoices (user_id,amount,status) values(?,?,?)", Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, "user1");
+            ps.setInt(2, 42);
+            ps.setString(3, "PENDING");
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKeys().values().iterator().next();
+    }
+
+    @Benchmark
+    public int randomId() {
+        return jdbcTemplate.update(INSERT, UUID.randomUUID(), "user1", 42, "PENDING");
+    }
+
+    @Benchmark
+    public int timeOrderedId() {
+        return jdbcTemplate.update(INSERT, InvoiceIds.next(), "user1", 42, "PENDING");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[][] randomIdBatch() {
+        return insertBatch(UUID::randomUUID);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[][] timeOrderedIdBatch() {
+        return insertBatch(InvoiceIds::next);
+    }
+
+    private int[][] insertBatch(Supplier<UUID> ids) {
+        List<UUID> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(ids.get());
+        }
+        return jdbcTemplate.batchUpdate(INSERT, batch, BATCH_SIZE, (ps, id) -> {
+            ps.setObject(1, id);
+            ps.setString(2, "user1");
+            ps.setInt(3, 42);
+            ps.setString(4, "PENDING");
+        });
+    }
+}
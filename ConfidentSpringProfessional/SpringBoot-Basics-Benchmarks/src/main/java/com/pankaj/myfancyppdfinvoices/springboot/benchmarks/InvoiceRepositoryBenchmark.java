@@ -0,0 +1,129 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import com.pankaj.myfancypdfinvoices.springboot.JdbcConfiguration;
+import com.pankaj.myfancypdfinvoices.springboot.repository.InvoiceRepository;
+import com.pankaj.myfancypdfinvoices.springboot.repository.InvoiceSummary;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jdbc.repository.config.EnableJdbcRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InvoiceRepository}'s keyset pages, summaries and batch inserts against the plain repository methods, on
+ * an in-memory H2 table of {@code tableSize} invoices.
+ * <p>
+ * The page benchmarks read {@value #PAGE_SIZE} invoices from the middle of the table. The insert benchmarks store
+ * {@value #BATCH_SIZE} new invoices per call, their scores are per invoice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceRepositoryBenchmark {
+
+    static final int PAGE_SIZE = 100;
+    static final int BATCH_SIZE = 500;
+
+    @Param({"10000", "100000"})
+    public int tableSize;
+
+    private ConfigurableApplicationContext context;
+    private InvoiceRepository invoiceRepository;
+    private int middlePage;
+    private String middleId;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Config.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:repository-benchmark-" + tableSize + ";DB_CLOSE_DELAY=-1",
+                        "--logging.level.root=warn");
+        invoiceRepository = context.getBean(InvoiceRepository.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("insert into invoices (user_id,amount,pdf_url,status) "
+                + "select 'user' || mod(x, 1000), 10 + mod(x, 41), 'https://cdn.pankaj.com/images/default/sample.pdf', 'READY' "
+                + "from system_range(1, ?)", tableSize);
+        middlePage = tableSize / 2 / PAGE_SIZE;
+        middleId = jdbcTemplate.queryForObject("select id from invoices order by id limit 1 offset ?",
+                String.class, middlePage * PAGE_SIZE - 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Invoice> offsetPage() {
+        return invoiceRepository.findAll(PageRequest.of(middlePage, PAGE_SIZE, Sort.by("id")));
+    }
+
+    @Benchmark
+    public List<Invoice> keysetPage() {
+        return invoiceRepository.findPageAfter(middleId, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<InvoiceSummary> keysetSummaries() {
+        return invoiceRepository.findSummariesAfter(middleId, PAGE_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Iterable<Invoice> saveAll() {
+        return invoiceRepository.saveAll(newInvoices());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Invoice> insertAll() {
+        return invoiceRepository.insertAll(newInvoices());
+    }
+
+    private static List<Invoice> newInvoices() {
+        List<Invoice> invoices = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            // without an id, so saveAll inserts them
+            Invoice invoice = new Invoice();
+            invoice.setUserId("user" + i % 1000);
+            invoice.setAmount(42);
+            invoice.setStatus(InvoiceStatus.READY);
+            invoices.add(invoice);
+        }
+        return invoices;
+    }
+
+    @EnableAutoConfiguration
+    @EnableJdbcRepositories(basePackageClasses = InvoiceRepository.class)
+    @Import(JdbcConfiguration.class)
+    static class Config {
+    }
+}
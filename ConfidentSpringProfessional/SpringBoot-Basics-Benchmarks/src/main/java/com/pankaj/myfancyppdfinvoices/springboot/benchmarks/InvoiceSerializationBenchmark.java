@@ -0,0 +1,56 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of invoice listings, with an ObjectMapper set up the way Spring Boot sets up its own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvoiceSerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int invoices;
+
+    private ObjectMapper objectMapper;
+    private List<Invoice> listing;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        listing = new ArrayList<>(invoices);
+        for (int i = 0; i < invoices; i++) {
+            Invoice invoice = new Invoice("user" + i % 1000, 10 + i % 41, "https://cdn.pankaj.com/images/default/sample.pdf");
+            invoice.setStatus(InvoiceStatus.READY);
+            listing.add(invoice);
+        }
+    }
+
+    @Benchmark
+    public byte[] writeListing() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(listing);
+    }
+}
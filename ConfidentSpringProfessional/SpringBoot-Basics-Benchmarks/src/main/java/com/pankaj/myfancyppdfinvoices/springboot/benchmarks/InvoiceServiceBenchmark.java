@@ -0,0 +1,99 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import com.pankaj.myfancyppdfinvoices.springboot.dto.InvoiceDto;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceService} through its Spring proxies,
+ * i.e. with transactions and caching, the way the controller calls it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceServiceBenchmark {
+
+    static final int BATCH_SIZE = 100;
+
+    /**
+     * Inserts one invoice, updates the user's totals and reserves a PDF rendering slot. The table
+     * keeps growing during the run, starting at {@code tableSize}.
+     */
+    @Benchmark
+    public Invoice create(InvoiceDatabase db) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return db.invoiceService.create("user" + random.nextInt(1000), 10 + random.nextInt(41));
+    }
+
+    /**
+     * {@value #BATCH_SIZE} invoices in one createAll call, i.e. one transaction and JDBC batches. Scores are per
+     * invoice, so they compare directly with {@link #createOneByOne}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<String> createAll(InvoiceDatabase db) {
+        return db.invoiceService.createAll(randomInvoices());
+    }
+
+    /**
+     * The same {@value #BATCH_SIZE} invoices as {@link #createAll}, with one create call (and transaction) each.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void createOneByOne(InvoiceDatabase db, Blackhole blackhole) {
+        for (InvoiceDto invoiceDto : randomInvoices()) {
+            blackhole.consume(db.invoiceService.create(invoiceDto.getUserId(), invoiceDto.getAmount()));
+        }
+    }
+
+    /**
+     * Same as {@link #create}, but through the group commit: the call returns once the batch it went into has
+     * committed. Run it with several threads, with one thread every call waits out the whole window alone.
+     */
+    @Benchmark
+    public Invoice createGroupCommit(InvoiceDatabase db) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return db.invoiceGroupCommit.create("user" + random.nextInt(1000), 10 + random.nextInt(41)).join();
+    }
+
+    /**
+     * Reads the whole table, the invoices cache is cleared first so every call hits the database.
+     */
+    @Benchmark
+    public List<Invoice> findAll(InvoiceDatabase db) {
+        db.invoicesCache.clear();
+        return db.invoiceService.findAll();
+    }
+
+    @Benchmark
+    public List<Invoice> findAllCached(InvoiceDatabase db) {
+        return db.invoiceService.findAll();
+    }
+
+    private static List<InvoiceDto> randomInvoices() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<InvoiceDto> invoiceDtos = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            InvoiceDto invoiceDto = new InvoiceDto();
+            invoiceDto.setUserId("user" + random.nextInt(1000));
+            invoiceDto.setAmount(10 + random.nextInt(41));
+            invoiceDtos.add(invoiceDto);
+        }
+        return invoiceDtos;
+    }
+}
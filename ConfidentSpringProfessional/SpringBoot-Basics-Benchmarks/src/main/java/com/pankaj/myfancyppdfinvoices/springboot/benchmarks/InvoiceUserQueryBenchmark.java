@@ -0,0 +1,85 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchive;
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchiveProperties;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicePartitions;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages through the invoices of one user, in an in-memory invoices table of {@code tableSize} rows. Every user has
+ * {@value #INVOICES_PER_USER} invoices whatever the size of the table, so with the {@code (user_id, id)} index the
+ * score should stay flat while the table grows. Scores are per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceUserQueryBenchmark {
+
+    static final int INVOICES_PER_USER = 100;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10000", "100000", "1000000"})
+    public int tableSize;
+
+    private SingleConnectionDataSource dataSource;
+    private InvoiceService invoiceService;
+    private int users;
+
+    @Setup
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:user-query-" + tableSize, true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        users = tableSize / INVOICES_PER_USER;
+        jdbcTemplate.update("insert into invoices (user_id,amount) select 'user' || mod(x, ?), 10 from system_range(1, ?)",
+                users, tableSize);
+        // called directly, without the cache in front of it
+        invoiceService = new InvoiceService(jdbcTemplate, null, null, null, null,
+                new InvoicePartitions(jdbcTemplate, null, false), new InvoiceArchive(new InvoiceArchiveProperties()),
+                new SimpleMeterRegistry(), 500);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    /**
+     * The first page of a random user, then the page after it.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public List<Invoice> firstAndNextPage() {
+        String userId = "user" + ThreadLocalRandom.current().nextInt(users);
+        List<Invoice> page = invoiceService.findByUserId(userId, null, PAGE_SIZE);
+        UUID after = UUID.fromString(page.get(page.size() - 1).getId());
+        return invoiceService.findByUserId(userId, after, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,115 @@
+package com.pankaj.myfancyppdfinvoices.springboot.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a {@code @Transactional} proxy costs on top of the same query run in auto-commit mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionalProxyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Context {
+        AnnotationConfigApplicationContext context;
+        Queries plain;
+        Queries proxied;
+
+        @Setup
+        public void setUp() {
+            context = new AnnotationConfigApplicationContext(Config.class);
+            proxied = context.getBean(Queries.class);
+            plain = new Queries(context.getBean(JdbcTemplate.class));
+        }
+
+        @TearDown
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public int autoCommit(Context context) {
+        return context.plain.selectOne();
+    }
+
+    @Benchmark
+    public int transactional(Context context) {
+        return context.proxied.selectOne();
+    }
+
+    @Benchmark
+    public int readOnlyTransactional(Context context) {
+        return context.proxied.selectOneReadOnly();
+    }
+
+    public static class Queries {
+        private final JdbcTemplate jdbcTemplate;
+
+        public Queries(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Transactional
+        public int selectOne() {
+            return jdbcTemplate.queryForObject("select 1", Integer.class);
+        }
+
+        @Transactional(readOnly = true)
+        public int selectOneReadOnly() {
+            return jdbcTemplate.queryForObject("select 1", Integer.class);
+        }
+    }
+
+    // not a @Configuration, which the component scan of the application in InvoiceDatabase would pick up
+    @EnableTransactionManagement
+    public static class Config {
+        @Bean(destroyMethod = "close")
+        public HikariDataSource dataSource() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:transactional-proxy;DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            dataSource.setPassword("sa");
+            return dataSource;
+        }
+
+        @Bean
+        public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        public Queries queries(JdbcTemplate jdbcTemplate) {
+            return new Queries(jdbcTemplate);
+        }
+    }
+}
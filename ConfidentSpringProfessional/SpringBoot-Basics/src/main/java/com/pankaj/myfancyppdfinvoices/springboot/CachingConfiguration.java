@@ -0,0 +1,49 @@
+package com.pankaj.myfancyppdfinvoices.springboot;
+
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicesVersion;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.cache.interceptor.SimpleKeyGenerator;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caffeine caches configured through the usual spring.cache.* properties. The cache manager is transaction aware:
+ * an eviction issued inside a transaction only happens after the commit, otherwise a concurrent reader could put
+ * the not yet committed state back into the cache.
+ * <p>
+ * That alone is not enough: a reader that queried before the commit can still put the old rows in after the
+ * eviction. So the keys of the invoices cache also hold the {@link InvoicesVersion}. The key is made before the
+ * cached method runs, so rows read before a write are only ever filed under the version from before it, and a
+ * reader that got the new version (and ETag) never sees them.
+ */
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
+public class CachingConfiguration {
+
+    public static final String INVOICES_KEY_GENERATOR = "invoicesKeyGenerator";
+
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+        caffeineCacheManager.setCacheSpecification(cacheProperties.getCaffeine().getSpec());
+        caffeineCacheManager.setCacheNames(cacheProperties.getCacheNames());
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+
+    /**
+     * The invoices version, the method name and the arguments.
+     */
+    @Bean(INVOICES_KEY_GENERATOR)
+    public KeyGenerator invoicesKeyGenerator(InvoicesVersion invoicesVersion) {
+        return (target, method, params) ->
+                new SimpleKey(invoicesVersion.current(), method.getName(), SimpleKeyGenerator.generateKey(params));
+    }
+}
@@ -0,0 +1,61 @@
+package com.pankaj.myfancyppdfinvoices.springboot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long every transaction takes, from right after it began until after its commit or
+ * rollback, as the {@code invoices.transactions} timer. Tagged with the transactional method
+ * ({@code name}, e.g. {@code InvoiceService.create}), {@code read_only} and {@code outcome}.
+ * Joined transactions are not recorded separately.
+ */
+public class MeteredTransactionManager extends DataSourceTransactionManager {
+
+    private final transient MeterRegistry meterRegistry;
+
+    public MeteredTransactionManager(DataSource dataSource, MeterRegistry meterRegistry) {
+        super(dataSource);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void prepareSynchronization(DefaultTransactionStatus status, TransactionDefinition definition) {
+        super.prepareSynchronization(status, definition);
+        if (!status.isNewTransaction() || !status.isNewSynchronization()) {
+            return;
+        }
+        String name = shortName(definition.getName());
+        boolean readOnly = definition.isReadOnly();
+        long start = System.nanoTime();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                Timer.builder("invoices.transactions")
+                        .tag("name", name)
+                        .tag("read_only", String.valueOf(readOnly))
+                        .tag("outcome", status == STATUS_COMMITTED ? "committed"
+                                : status == STATUS_ROLLED_BACK ? "rolled_back" : "unknown")
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    /** com.pankaj.service.InvoiceService.create becomes InvoiceService.create. */
+    private static String shortName(String name) {
+        if (name == null) {
+            return "none";
+        }
+        int method = name.lastIndexOf('.');
+        int type = method > 0 ? name.lastIndexOf('.', method - 1) : -1;
+        return name.substring(type + 1);
+    }
+}
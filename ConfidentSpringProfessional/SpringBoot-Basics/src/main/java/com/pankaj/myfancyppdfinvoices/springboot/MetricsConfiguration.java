@@ -0,0 +1,28 @@
+package com.pankaj.myfancyppdfinvoices.springboot;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+
+/**
+ * Timers for the service methods annotated with {@code @Timed} and for every database transaction. Percentiles
+ * and histogram buckets are switched on through the management.metrics.distribution.* properties, the
+ * results are scraped from /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager(DataSource dataSource, MeterRegistry meterRegistry) {
+        return new MeteredTransactionManager(dataSource, meterRegistry);
+    }
+}
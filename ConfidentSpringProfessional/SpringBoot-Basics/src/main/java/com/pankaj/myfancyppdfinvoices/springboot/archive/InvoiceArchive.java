@@ -0,0 +1,134 @@
+package com.pankaj.myfancyppdfinvoices.springboot.archive;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The cold tier of the invoices: immutable segment files in {@code invoices.archive.dir}, written by the
+ * {@link InvoiceArchiver} and read through memory mappings, see {@link Segment}. Lookups by id and exports are
+ * served from here too; pages and user queries read the database alone.
+ * <p>
+ * A segment is written under a temporary name and renamed once it is complete and on disk, so a crash never leaves
+ * half a segment behind. The invoices it holds are deleted from the database only after that.
+ */
+@Component
+public class InvoiceArchive {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final InvoiceArchiveProperties properties;
+    private final Path dir;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private int nextSegment;
+
+    public InvoiceArchive(InvoiceArchiveProperties properties) {
+        this.properties = properties;
+        this.dir = Paths.get(properties.getDir());
+    }
+
+    @PostConstruct
+    public void loadSegments() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    // left behind by an archiver run that did not finish, its invoices are still in the database
+                    Files.delete(file);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        for (Path file : files) {
+            segments.add(Segment.open(file));
+            String name = file.getFileName().toString();
+            nextSegment = Math.max(nextSegment, Integer.parseInt(
+                    name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())) + 1);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * The archived invoice with this id, or null if it is not archived.
+     */
+    public Invoice find(UUID id) {
+        // newest first, if an invoice was archived twice after a crash both copies are the same
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Invoice invoice = segments.get(i).find(id);
+            if (invoice != null) {
+                return invoice;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hands every archived invoice to the consumer, segment by segment.
+     */
+    public void forEach(Consumer<Invoice> consumer) {
+        for (Segment segment : segments) {
+            segment.forEach(consumer);
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getInvoiceCount() {
+        return segments.stream().mapToLong(Segment::getInvoiceCount).sum();
+    }
+
+    public long getSize() {
+        return segments.stream().mapToLong(Segment::getSize).sum();
+    }
+
+    synchronized SegmentWriter newSegment() throws IOException {
+        if (!properties.isEnabled()) {
+            throw new IllegalStateException("The archive is disabled, see invoices.archive.enabled");
+        }
+        String name = String.format("%s%08d%s%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX, TEMPORARY_SUFFIX);
+        return new SegmentWriter(dir.resolve(name), properties.getBlockSize());
+    }
+
+    /**
+     * Finishes the segment and makes it part of the archive. From then on its invoices are found here.
+     */
+    void publish(SegmentWriter writer) throws IOException {
+        writer.finish();
+        String name = writer.getFile().getFileName().toString();
+        Path file = writer.getFile().resolveSibling(name.substring(0, name.length() - TEMPORARY_SUFFIX.length()));
+        Files.move(writer.getFile(), file, StandardCopyOption.ATOMIC_MOVE);
+        try {
+            segments.add(Segment.open(file));
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+}
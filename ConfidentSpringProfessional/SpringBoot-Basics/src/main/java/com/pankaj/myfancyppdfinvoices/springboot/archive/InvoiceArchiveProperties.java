@@ -0,0 +1,59 @@
+package com.pankaj.myfancyppdfinvoices.springboot.archive;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "invoices.archive")
+public class InvoiceArchiveProperties {
+    /** Whether old invoices are moved into the archive at all. */
+    private boolean enabled;
+    /** Directory the segment files are kept in. */
+    private String dir = System.getProperty("java.io.tmpdir") + "/invoice-archive";
+    /** Invoices older than this are archived. */
+    private Duration age = Duration.ofDays(90);
+    /** How often the archiver runs, zero to only run it through the invoicearchive actuator endpoint. */
+    private Duration interval = Duration.ofHours(1);
+    /** Invoices per compressed block of a segment, the sparse index has one entry per block. */
+    private int blockSize = 64;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    public Duration getAge() {
+        return age;
+    }
+
+    public void setAge(Duration age) {
+        this.age = age;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+}
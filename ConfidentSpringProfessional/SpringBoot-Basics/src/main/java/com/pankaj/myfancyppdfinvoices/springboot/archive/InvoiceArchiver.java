@@ -0,0 +1,258 @@
+package com.pankaj.myfancyppdfinvoices.springboot.archive;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicePartitions;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceService;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicesVersion;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Moves invoices older than {@code invoices.archive.age} from the database into the {@link InvoiceArchive}, every
+ * {@code invoices.archive.interval} and on {@code POST /actuator/invoicearchive}. Invoices keep counting towards
+ * their users' totals.
+ * <p>
+ * With partitioning, every month that ended before the cutoff is written to a segment and then dropped as a
+ * whole. From the {@code invoices} table the time-ordered invoices older than the cutoff are written to segments of
+ * at most {@value #MAX_DELETED_SEGMENT_INVOICES}, each deleted as soon as its segment is published; random ids carry
+ * no creation time and stay. Invoices still waiting for their PDF are left for a later run, a month with any of them
+ * is skipped entirely. Each segment is published before its invoices leave the database, so a lookup always finds an
+ * invoice in one place or the other.
+ */
+@Component
+public class InvoiceArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceArchiver.class);
+
+    private static final String COLUMNS = "id,user_id,pdf_url,amount,status";
+    private static final int FETCH_SIZE = 5000;
+    // a segment is mapped as one buffer, and those can't be larger than 2 GB
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+    // the ids of a segment from the invoices table are kept until it is published and they can be deleted
+    private static final int MAX_DELETED_SEGMENT_INVOICES = 100_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InvoicePartitions invoicePartitions;
+    private final InvoicesVersion invoicesVersion;
+    private final InvoiceArchive invoiceArchive;
+    private final Cache invoicesCache;
+    private final InvoiceArchiveProperties properties;
+    private final int batchChunkSize;
+    private ScheduledExecutorService scheduler;
+
+    public InvoiceArchiver(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           InvoicePartitions invoicePartitions, InvoicesVersion invoicesVersion,
+                           InvoiceArchive invoiceArchive, CacheManager cacheManager,
+                           InvoiceArchiveProperties properties,
+                           @Value("${invoices.batch.chunk-size:500}") int batchChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.invoicePartitions = invoicePartitions;
+        this.invoicesVersion = invoicesVersion;
+        this.invoiceArchive = invoiceArchive;
+        this.invoicesCache = cacheManager.getCache(InvoiceService.INVOICES_CACHE);
+        this.properties = properties;
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled() || properties.getInterval().isZero()) {
+            return;
+        }
+        long interval = properties.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("invoice-archiver-"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archive();
+            } catch (RuntimeException e) {
+                // keep the schedule going, the next run picks up where this one failed
+                log.warn("Archiving invoices failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Archives the invoices older than {@code invoices.archive.age} and returns how many were moved.
+     */
+    @Timed("invoices.service")
+    public long archive() {
+        return archiveOlderThan(Instant.now().minus(properties.getAge()));
+    }
+
+    /**
+     * Archives the invoices created before the cutoff and returns how many were moved.
+     */
+    @Timed("invoices.service")
+    public synchronized long archiveOlderThan(Instant cutoff) {
+        if (!invoiceArchive.isEnabled()) {
+            throw new IllegalStateException("The archive is disabled, see invoices.archive.enabled");
+        }
+        long archived = 0;
+        if (invoicePartitions.isEnabled()) {
+            YearMonth current = YearMonth.now(ZoneOffset.UTC);
+            for (YearMonth month : new ArrayList<>(invoicePartitions.months())) {
+                if (month.isBefore(current) && !start(month.plusMonths(1)).isAfter(cutoff)) {
+                    archived += archiveMonth(month);
+                }
+            }
+        }
+        archived += archiveUnpartitioned(cutoff);
+        return archived;
+    }
+
+    private long archiveMonth(YearMonth month) {
+        String table = invoicePartitions.table(month);
+        Long pending = jdbcTemplate.queryForObject("select count(*) from " + table + " where status = ?",
+                Long.class, InvoiceStatus.PENDING.name());
+        if (pending != null && pending > 0) {
+            log.info("Not archiving {} yet, {} of its invoices are still waiting for their PDF", month, pending);
+            return 0;
+        }
+        long archived = writeSegments("select " + COLUMNS + " from " + table + " order by id", new Object[0],
+                Integer.MAX_VALUE, null);
+        invoicePartitions.drop(month);
+        moved();
+        log.info("Archived {} invoices of {}", archived, month);
+        return archived;
+    }
+
+    private long archiveUnpartitioned(Instant cutoff) {
+        long archived = writeSegments("select " + COLUMNS + " from " + InvoicePartitions.UNPARTITIONED_TABLE
+                        + " where id >= ? and id < ? and status <> ? order by id",
+                new Object[]{InvoiceIds.lowerBound(Instant.EPOCH), InvoiceIds.lowerBound(cutoff), InvoiceStatus.PENDING.name()},
+                MAX_DELETED_SEGMENT_INVOICES, ids -> {
+                    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                            "delete from " + InvoicePartitions.UNPARTITIONED_TABLE + " where id = ?",
+                            ids, batchChunkSize, (ps, id) -> ps.setObject(1, id)));
+                    moved();
+                });
+        if (archived > 0) {
+            log.info("Archived {} invoices created before {}", archived, cutoff);
+        }
+        return archived;
+    }
+
+    /**
+     * Writes the time-ordered invoices the query returns, in id order, into as many segments as it takes, of at most
+     * {@code maxSegmentInvoices} invoices each, and publishes them. Unless {@code published} is null it gets the ids
+     * of every segment right after the segment is published. Returns the number of invoices written.
+     */
+    private long writeSegments(String sql, Object[] args, int maxSegmentInvoices, Consumer<List<UUID>> published) {
+        SegmentWriter[] writer = new SegmentWriter[1];
+        List<UUID> ids = new ArrayList<>();
+        long[] count = new long[1];
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(FETCH_SIZE);
+                for (int i = 0; i < args.length; i++) {
+                    ps.setObject(i + 1, args[i]);
+                }
+                return ps;
+            }, resultSet -> {
+                Invoice invoice = toInvoice(resultSet);
+                UUID id = UUID.fromString(invoice.getId());
+                if (!InvoiceIds.isTimeOrdered(id)) {
+                    return;
+                }
+                try {
+                    if (writer[0] == null) {
+                        writer[0] = invoiceArchive.newSegment();
+                    }
+                    writer[0].add(invoice);
+                    if (published != null) {
+                        ids.add(id);
+                    }
+                    count[0]++;
+                    if (writer[0].getSize() >= MAX_SEGMENT_SIZE || writer[0].getInvoiceCount() >= maxSegmentInvoices) {
+                        publish(writer, ids, published);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (writer[0] != null) {
+                publish(writer, ids, published);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (writer[0] != null) {
+                try {
+                    writer[0].discard();
+                } catch (IOException e) {
+                    log.warn("Could not delete {}", writer[0].getFile(), e);
+                }
+            }
+        }
+        return count[0];
+    }
+
+    private void publish(SegmentWriter[] writer, List<UUID> ids, Consumer<List<UUID>> published) throws IOException {
+        invoiceArchive.publish(writer[0]);
+        writer[0] = null;
+        if (published != null) {
+            published.accept(ids);
+            ids.clear();
+        }
+    }
+
+    // called once the move has committed, see PdfRenderingPipeline for the order
+    private void moved() {
+        invoicesVersion.bump();
+        invoicesCache.clear();
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static Invoice toInvoice(ResultSet resultSet) throws SQLException {
+        Invoice invoice = new Invoice();
+        invoice.setId(resultSet.getObject("id").toString());
+        invoice.setPdfUrl(resultSet.getString("pdf_url"));
+        invoice.setUserId(resultSet.getString("user_id"));
+        invoice.setAmount((Integer) resultSet.getObject("amount"));
+        invoice.setStatus(InvoiceStatus.valueOf(resultSet.getString("status")));
+        return invoice;
+    }
+}
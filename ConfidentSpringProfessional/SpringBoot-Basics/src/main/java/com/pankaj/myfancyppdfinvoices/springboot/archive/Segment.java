@@ -0,0 +1,234 @@
+package com.pankaj.myfancyppdfinvoices.springboot.archive;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * One immutable segment file of the archive, read through a memory mapping. The file is
+ * <pre>
+ * header  int magic, int version
+ * blocks  deflate compressed invoices, sorted by id
+ * index   per block: long first id msb, long first id lsb, long offset, int compressed length, int length
+ * footer  long last id msb, long last id lsb, long invoice count, long index offset, int block count, int magic
+ * </pre>
+ * The index is sparse, one entry per block, and is read into memory when the segment is opened. A lookup finds the
+ * block by binary search and inflates only that block, straight from the mapped file: the operating system's page
+ * cache holds the hot parts of the archive, not the heap and not H2's cache.
+ */
+final class Segment {
+
+    static final int MAGIC = 0x494e5653;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int INDEX_ENTRY_SIZE = 32;
+    static final int FOOTER_SIZE = 40;
+    private static final int NULL_STRING = 0xFFFF;
+
+    private final Path file;
+    private final ByteBuffer data;
+    private final UUID[] firstIds;
+    private final int[] offsets;
+    private final int[] compressedLengths;
+    private final int[] lengths;
+    private final UUID lastId;
+    private final long invoiceCount;
+
+    private Segment(Path file, ByteBuffer data) throws IOException {
+        this.file = file;
+        this.data = data;
+        int size = data.capacity();
+        if (size < HEADER_SIZE + FOOTER_SIZE || data.getInt(0) != MAGIC || data.getInt(size - 4) != MAGIC) {
+            throw new IOException(file + " is not an invoice archive segment");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException(file + " has unknown segment version " + data.getInt(4));
+        }
+        int footer = size - FOOTER_SIZE;
+        this.lastId = new UUID(data.getLong(footer), data.getLong(footer + 8));
+        this.invoiceCount = data.getLong(footer + 16);
+        int indexOffset = (int) data.getLong(footer + 24);
+        int blocks = data.getInt(footer + 32);
+
+        this.firstIds = new UUID[blocks];
+        this.offsets = new int[blocks];
+        this.compressedLengths = new int[blocks];
+        this.lengths = new int[blocks];
+        for (int block = 0; block < blocks; block++) {
+            int entry = indexOffset + block * INDEX_ENTRY_SIZE;
+            firstIds[block] = new UUID(data.getLong(entry), data.getLong(entry + 8));
+            offsets[block] = (int) data.getLong(entry + 16);
+            compressedLengths[block] = data.getInt(entry + 24);
+            lengths[block] = data.getInt(entry + 28);
+        }
+    }
+
+    static Segment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped");
+            }
+            // the mapping stays valid after the channel is closed
+            return new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getInvoiceCount() {
+        return invoiceCount;
+    }
+
+    long getSize() {
+        return data.capacity();
+    }
+
+    /**
+     * The invoice with this id, or null if it is not in this segment.
+     */
+    Invoice find(UUID id) {
+        if (firstIds.length == 0 || id.compareTo(firstIds[0]) < 0 || id.compareTo(lastId) > 0) {
+            return null;
+        }
+        ByteBuffer records = inflate(blockOf(id));
+        while (records.hasRemaining()) {
+            // only the id is decoded until the invoice is found
+            int comparison = new UUID(records.getLong(), records.getLong()).compareTo(id);
+            if (comparison >= 0) {
+                return comparison == 0 ? readInvoice(id, records) : null;
+            }
+            skipInvoice(records);
+        }
+        return null;
+    }
+
+    /**
+     * Hands every invoice of the segment to the consumer, in id order.
+     */
+    void forEach(Consumer<Invoice> consumer) {
+        for (int block = 0; block < firstIds.length; block++) {
+            ByteBuffer records = inflate(block);
+            while (records.hasRemaining()) {
+                consumer.accept(readInvoice(new UUID(records.getLong(), records.getLong()), records));
+            }
+        }
+    }
+
+    // the last block whose first id is not greater than the given one
+    private int blockOf(UUID id) {
+        int low = 0;
+        int high = firstIds.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstIds[middle].compareTo(id) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private ByteBuffer inflate(int block) {
+        ByteBuffer compressed = data.duplicate();
+        compressed.position(offsets[block]).limit(offsets[block] + compressedLengths[block]);
+        byte[] bytes = new byte[lengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < bytes.length && !inflater.finished()) {
+                int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != bytes.length) {
+                throw new IllegalStateException("Block " + block + " of " + file + " is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Block " + block + " of " + file + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    static void writeInvoice(DataOutput out, Invoice invoice) throws IOException {
+        UUID id = UUID.fromString(invoice.getId());
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+        writeString(out, invoice.getUserId());
+        writeString(out, invoice.getPdfUrl());
+        out.writeBoolean(invoice.getAmount() != null);
+        if (invoice.getAmount() != null) {
+            out.writeInt(invoice.getAmount());
+        }
+        writeString(out, invoice.getStatus().name());
+    }
+
+    // the rest of an invoice, after its id
+    private static Invoice readInvoice(UUID id, ByteBuffer in) {
+        Invoice invoice = new Invoice();
+        invoice.setId(id.toString());
+        invoice.setUserId(readString(in));
+        invoice.setPdfUrl(readString(in));
+        invoice.setAmount(in.get() != 0 ? in.getInt() : null);
+        invoice.setStatus(InvoiceStatus.valueOf(readString(in)));
+        return invoice;
+    }
+
+    private static void skipInvoice(ByteBuffer in) {
+        skipString(in);
+        skipString(in);
+        if (in.get() != 0) {
+            in.position(in.position() + 4);
+        }
+        skipString(in);
+    }
+
+    // length in bytes as an unsigned short, 0xFFFF for null, then UTF-8
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("Can't archive a value of " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length == NULL_STRING) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void skipString(ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length != NULL_STRING) {
+            in.position(in.position() + length);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.pankaj.myfancyppdfinvoices.springboot.archive;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one {@link Segment} file. Invoices must be added in id order; they are collected into blocks of
+ * {@code blockSize} invoices, each compressed on its own so a lookup only has to inflate one of them.
+ */
+final class SegmentWriter implements Closeable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final int blockSize;
+    private final Deflater deflater = new Deflater();
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+    private final DataOutputStream blockOut = new DataOutputStream(block);
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private final DataOutputStream indexOut = new DataOutputStream(index);
+    private final byte[] compressed = new byte[64 * 1024];
+
+    private long position;
+    private int blocks;
+    private int blockInvoices;
+    private UUID firstOfBlock;
+    private UUID last;
+    private long invoiceCount;
+
+    SegmentWriter(Path file, int blockSize) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        this.blockSize = blockSize;
+        out.writeInt(Segment.MAGIC);
+        out.writeInt(Segment.VERSION);
+        position = Segment.HEADER_SIZE;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getInvoiceCount() {
+        return invoiceCount;
+    }
+
+    /**
+     * Bytes written so far, roughly the size of the file.
+     */
+    long getSize() {
+        return position + block.size();
+    }
+
+    void add(Invoice invoice) throws IOException {
+        UUID id = UUID.fromString(invoice.getId());
+        if (last != null && id.compareTo(last) <= 0) {
+            throw new IllegalArgumentException("Invoices must be added in id order, " + id + " came after " + last);
+        }
+        if (blockInvoices == 0) {
+            firstOfBlock = id;
+        }
+        Segment.writeInvoice(blockOut, invoice);
+        last = id;
+        invoiceCount++;
+        if (++blockInvoices == blockSize) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the index and the footer and forces the file to disk. Nothing may be added afterwards.
+     */
+    void finish() throws IOException {
+        if (blockInvoices > 0) {
+            writeBlock();
+        }
+        long indexOffset = position;
+        index.writeTo(out);
+        out.writeLong(last != null ? last.getMostSignificantBits() : 0);
+        out.writeLong(last != null ? last.getLeastSignificantBits() : 0);
+        out.writeLong(invoiceCount);
+        out.writeLong(indexOffset);
+        out.writeInt(blocks);
+        out.writeInt(Segment.MAGIC);
+        out.flush();
+        channel.force(true);
+        close();
+    }
+
+    /**
+     * Closes and deletes an unfinished segment.
+     */
+    void discard() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        out.close();
+    }
+
+    private void writeBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(block.toByteArray());
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            int length = deflater.deflate(compressed);
+            out.write(compressed, 0, length);
+            compressedLength += length;
+        }
+        indexOut.writeLong(firstOfBlock.getMostSignificantBits());
+        indexOut.writeLong(firstOfBlock.getLeastSignificantBits());
+        indexOut.writeLong(position);
+        indexOut.writeInt(compressedLength);
+        indexOut.writeInt(block.size());
+        position += compressedLength;
+        blocks++;
+        blockInvoices = 0;
+        block.reset();
+    }
+}
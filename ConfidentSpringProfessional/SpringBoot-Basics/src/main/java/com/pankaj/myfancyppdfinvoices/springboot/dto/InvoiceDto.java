@@ -5,12 +5,14 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
 
 public class InvoiceDto {
 
     @JsonProperty("user_id")
     @NotBlank
     private String userId;
+    @NotNull
     @Min(10)
     @Max(50)
     private Integer amount;
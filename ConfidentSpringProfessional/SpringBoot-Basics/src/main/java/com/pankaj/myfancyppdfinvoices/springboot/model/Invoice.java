@@ -2,8 +2,6 @@ package com.pankaj.myfancyppdfinvoices.springboot.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.util.UUID;
-
 public class Invoice {
     private String id;
     @JsonProperty("user_id")
@@ -11,11 +9,12 @@ public class Invoice {
     @JsonProperty("pdf_url")
     private String pdfUrl;
     private Integer amount;
+    private InvoiceStatus status;
 
     public Invoice(){};
 
     public Invoice(String userId,Integer amount,String pdfUrl) {
-        this.id = UUID.randomUUID().toString();
+        this.id = InvoiceIds.next().toString();
         this.userId = userId;
         this.amount = amount;
         this.pdfUrl = pdfUrl;
@@ -52,4 +51,12 @@ public class Invoice {
     public void setAmount(Integer amount) {
         this.amount = amount;
     }
+
+    public InvoiceStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(InvoiceStatus status) {
+        this.status = status;
+    }
 }
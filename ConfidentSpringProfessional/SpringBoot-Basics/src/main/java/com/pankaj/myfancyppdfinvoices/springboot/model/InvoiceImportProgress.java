@@ -0,0 +1,92 @@
+package com.pankaj.myfancyppdfinvoices.springboot.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Where a CSV import stands: rows read so far, how many of them are committed and how many were rejected.
+ * The last report of an import is {@code done} and lists the reasons for (the first) rejected rows, and why the
+ * import stopped early if it did.
+ */
+public class InvoiceImportProgress {
+    private long rows;
+    private long imported;
+    private long rejected;
+    @JsonProperty("elapsed_ms")
+    private long elapsedMs;
+    private boolean done;
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> errors;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public InvoiceImportProgress() { }
+
+    public InvoiceImportProgress(long rows, long imported, long rejected, long elapsedMs, boolean done,
+                                 List<String> errors) {
+        this.rows = rows;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.elapsedMs = elapsedMs;
+        this.done = done;
+        this.errors = errors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,10 @@
+package com.pankaj.myfancyppdfinvoices.springboot.model;
+
+public enum InvoiceStatus {
+    /** The invoice is stored, its PDF is still waiting to be rendered. */
+    PENDING,
+    /** The PDF is rendered and available under the invoice's pdf_url. */
+    READY,
+    /** Rendering the PDF failed. */
+    FAILED
+}
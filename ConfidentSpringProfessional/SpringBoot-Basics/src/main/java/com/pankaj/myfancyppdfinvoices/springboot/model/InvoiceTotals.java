@@ -0,0 +1,44 @@
+package com.pankaj.myfancyppdfinvoices.springboot.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class InvoiceTotals {
+    @JsonProperty("user_id")
+    private String userId;
+    @JsonProperty("invoice_count")
+    private long invoiceCount;
+    @JsonProperty("amount_sum")
+    private long amountSum;
+
+    public InvoiceTotals() { }
+
+    public InvoiceTotals(String userId, long invoiceCount, long amountSum) {
+        this.userId = userId;
+        this.invoiceCount = invoiceCount;
+        this.amountSum = amountSum;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public long getInvoiceCount() {
+        return invoiceCount;
+    }
+
+    public void setInvoiceCount(long invoiceCount) {
+        this.invoiceCount = invoiceCount;
+    }
+
+    public long getAmountSum() {
+        return amountSum;
+    }
+
+    public void setAmountSum(long amountSum) {
+        this.amountSum = amountSum;
+    }
+}
@@ -0,0 +1,84 @@
+package com.pankaj.myfancyppdfinvoices.springboot.pdf;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders a single page PDF for an invoice. The page content comes from the {@code invoice.tpl} template,
+ * a PDF content stream with {{id}}, {{user_id}} and {{amount}} placeholders. The document around it is
+ * written by hand (no PDF library needed for one page of Helvetica text), the byte offsets in the xref
+ * table have to be exact.
+ */
+@Component
+public class PdfRenderer {
+
+    static final String INVOICE_TEMPLATE = "invoice.tpl";
+
+    private final PdfTemplateCache templateCache;
+
+    public PdfRenderer(PdfTemplateCache templateCache) {
+        this.templateCache = templateCache;
+    }
+
+    public byte[] render(Invoice invoice) {
+        String template;
+        try {
+            template = StandardCharsets.ISO_8859_1.decode(templateCache.get(INVOICE_TEMPLATE)).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String content = template
+                .replace("{{id}}", escape(invoice.getId()))
+                .replace("{{user_id}}", escape(invoice.getUserId()))
+                .replace("{{amount}}", escape(String.valueOf(invoice.getAmount())));
+        return document(content);
+    }
+
+    private static byte[] document(String content) {
+        byte[] contentBytes = content.getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024 + contentBytes.length);
+        List<Integer> offsets = new ArrayList<>();
+
+        write(out, "%PDF-1.4\n");
+        offsets.add(out.size());
+        write(out, "1 0 obj << /Type /Catalog /Pages 2 0 R >> endobj\n");
+        offsets.add(out.size());
+        write(out, "2 0 obj << /Type /Pages /Kids [3 0 R] /Count 1 >> endobj\n");
+        offsets.add(out.size());
+        write(out, "3 0 obj << /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] /Contents 4 0 R " +
+                "/Resources << /Font << /F1 5 0 R >> >> >> endobj\n");
+        offsets.add(out.size());
+        write(out, "4 0 obj << /Length " + contentBytes.length + " >> stream\n");
+        out.write(contentBytes, 0, contentBytes.length);
+        write(out, "endstream endobj\n");
+        offsets.add(out.size());
+        write(out, "5 0 obj << /Type /Font /Subtype /Type1 /BaseFont /Helvetica >> endobj\n");
+
+        int xref = out.size();
+        StringBuilder trailer = new StringBuilder("xref\n0 ").append(offsets.size() + 1).append('\n')
+                .append("0000000000 65535 f \n");
+        for (Integer offset : offsets) {
+            trailer.append(String.format("%010d 00000 n \n", offset));
+        }
+        trailer.append("trailer << /Size ").append(offsets.size() + 1).append(" /Root 1 0 R >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        write(out, trailer.toString());
+        return out.toByteArray();
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("(", "\\(").replace(")", "\\)");
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        out.write(bytes, 0, bytes.length);
+    }
+}
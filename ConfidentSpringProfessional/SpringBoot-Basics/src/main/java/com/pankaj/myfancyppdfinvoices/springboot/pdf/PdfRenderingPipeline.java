@@ -0,0 +1,222 @@
+package com.pankaj.myfancyppdfinvoices.springboot.pdf;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicePartitions;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceService;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicesVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders invoice PDFs on a fixed number of worker threads, off the request thread.
+ * <p>
+ * Invoices are handed over in jobs of at most {@code pdf.rendering.job-size} invoices. At most
+ * {@code pdf.rendering.queue-capacity} jobs may wait for a worker: when the queue is full, {@link #submit(List)}
+ * blocks for up to {@code pdf.rendering.submit-timeout-ms} and then fails with a {@link RejectedExecutionException},
+ * which rolls back the caller's transaction. Queue slots are reserved when submitting, but the jobs are only handed
+ * to the workers once the caller's transaction has committed, so workers never see uncommitted invoices.
+ * <p>
+ * The PDFs are written to {@code pdf.rendering.output-dir} and served from there by {@code GET /invoices/{id}/pdf},
+ * which is what an invoice's pdf_url points to.
+ */
+@Component
+public class PdfRenderingPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfRenderingPipeline.class);
+
+    private final PdfRenderer pdfRenderer;
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache invoicesCache;
+    private final InvoicesVersion invoicesVersion;
+    private final InvoicePartitions invoicePartitions;
+    private final int jobSize;
+    private final int queueCapacity;
+    private final long submitTimeoutMs;
+    private final Path outputDir;
+    private final Semaphore queueSlots;
+    private final ThreadPoolExecutor executor;
+    private final Timer renderTimer;
+    private final Counter renderFailures;
+
+    public PdfRenderingPipeline(PdfRenderer pdfRenderer, JdbcTemplate jdbcTemplate, CacheManager cacheManager,
+                                InvoicesVersion invoicesVersion, InvoicePartitions invoicePartitions,
+                                PdfRenderingProperties properties, MeterRegistry meterRegistry) throws IOException {
+        this.pdfRenderer = pdfRenderer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.invoicesCache = cacheManager.getCache(InvoiceService.INVOICES_CACHE);
+        this.invoicesVersion = invoicesVersion;
+        this.invoicePartitions = invoicePartitions;
+        this.jobSize = properties.getJobSize();
+        this.queueCapacity = properties.getQueueCapacity();
+        this.submitTimeoutMs = properties.getSubmitTimeoutMs();
+        this.outputDir = Files.createDirectories(Paths.get(properties.getOutputDir()));
+        this.queueSlots = new Semaphore(queueCapacity);
+
+        int workers = properties.getWorkers() > 0 ? properties.getWorkers() : Runtime.getRuntime().availableProcessors();
+        // the queue itself is unbounded, its size is bounded by the queue slots
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("pdf-renderer-"));
+
+        Gauge.builder("pdf.rendering.queue.depth", executor, e -> e.getQueue().size())
+                .description("Render jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("pdf.rendering.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Workers currently rendering")
+                .register(meterRegistry);
+        this.renderTimer = Timer.builder("pdf.rendering.latency")
+                .description("Time to render and store the PDF of one invoice")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.renderFailures = Counter.builder("pdf.rendering.failures")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Schedules the PDFs of the given invoices for rendering. Each invoice's pdf_url and status are
+     * updated once its PDF is written. Invoices whose transaction commits after {@link #shutDown} are marked FAILED.
+     */
+    public void submit(List<Invoice> invoices) {
+        List<List<Invoice>> jobs = new ArrayList<>();
+        for (int i = 0; i < invoices.size(); i += jobSize) {
+            jobs.add(new ArrayList<>(invoices.subList(i, Math.min(i + jobSize, invoices.size()))));
+        }
+        reserveSlots(jobs.size());
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            jobs.forEach(this::enqueue);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                jobs.forEach(PdfRenderingPipeline.this::enqueue);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    queueSlots.release(jobs.size());
+                }
+            }
+        });
+    }
+
+    private void reserveSlots(int slots) {
+        if (slots > queueCapacity) {
+            throw new RejectedExecutionException("Too many invoices for the PDF rendering queue: " + slots +
+                    " jobs, capacity is " + queueCapacity);
+        }
+        try {
+            if (!queueSlots.tryAcquire(slots, submitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("PDF rendering queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the PDF rendering queue", e);
+        }
+    }
+
+    private void enqueue(List<Invoice> job) {
+        try {
+            executor.execute(() -> {
+                queueSlots.release();
+                render(job);
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down: the transaction has committed already, so the invoices can only be marked as failed
+            queueSlots.release();
+            log.warn("Could not schedule the PDFs of {} invoices, marking them FAILED", job.size(), e);
+            renderFailures.increment(job.size());
+            Map<String, List<Object[]>> updates = new LinkedHashMap<>();
+            for (Invoice invoice : job) {
+                UUID id = UUID.fromString(invoice.getId());
+                updates.computeIfAbsent(invoicePartitions.tableFor(id), table -> new ArrayList<>())
+                        .add(new Object[]{null, InvoiceStatus.FAILED.name(), id});
+            }
+            store(updates, job.size());
+        }
+    }
+
+    private void render(List<Invoice> job) {
+        // per table, with partitioning a job can span the end of a month
+        Map<String, List<Object[]>> updates = new LinkedHashMap<>();
+        for (Invoice invoice : job) {
+            long start = System.nanoTime();
+            UUID id = UUID.fromString(invoice.getId());
+            List<Object[]> tableUpdates = updates.computeIfAbsent(invoicePartitions.tableFor(id), table -> new ArrayList<>());
+            try {
+                Files.write(pdfFile(id), pdfRenderer.render(invoice));
+                tableUpdates.add(new Object[]{pdfUrl(invoice.getId()),
+                        InvoiceStatus.READY.name(), id});
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not render PDF for invoice {}", invoice.getId(), e);
+                renderFailures.increment();
+                tableUpdates.add(new Object[]{null, InvoiceStatus.FAILED.name(), id});
+            } finally {
+                renderTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        store(updates, job.size());
+    }
+
+    private void store(Map<String, List<Object[]>> updates, int invoices) {
+        try {
+            updates.forEach((table, tableUpdates) -> jdbcTemplate.batchUpdate(
+                    "update " + table + " set pdf_url = ?, status = ? where id = ?", tableUpdates));
+            // the updates are committed: new version first, so cached lists of the old one are not served any more
+            // (they are keyed by version), clearing then only frees them
+            invoicesVersion.bump();
+            if (invoicesCache != null) {
+                invoicesCache.clear();
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not store the rendered PDFs of {} invoices", invoices, e);
+        }
+    }
+
+    /**
+     * Where the PDF of the invoice is written to. The file only exists once the invoice is READY.
+     */
+    public Path pdfFile(UUID id) {
+        return outputDir.resolve(id + ".pdf");
+    }
+
+    static String pdfUrl(String id) {
+        return "/invoices/" + id + "/pdf";
+    }
+
+    @PreDestroy
+    public void shutDown() throws InterruptedException {
+        // invoices whose job did not start yet stay PENDING
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,57 @@
+package com.pankaj.myfancyppdfinvoices.springboot.pdf;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "pdf.rendering")
+public class PdfRenderingProperties {
+    /** Number of render threads, 0 means one per available processor. */
+    private int workers;
+    /** Maximum number of render jobs waiting for a worker. */
+    private int queueCapacity = 1000;
+    /** Maximum number of invoices rendered by one job. */
+    private int jobSize = 100;
+    /** How long a caller waits for room in a full queue before giving up. */
+    private long submitTimeoutMs = 2000;
+    /** Directory the rendered PDFs are written to. */
+    private String outputDir = System.getProperty("java.io.tmpdir") + "/invoices";
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getJobSize() {
+        return jobSize;
+    }
+
+    public void setJobSize(int jobSize) {
+        this.jobSize = jobSize;
+    }
+
+    public long getSubmitTimeoutMs() {
+        return submitTimeoutMs;
+    }
+
+    public void setSubmitTimeoutMs(long submitTimeoutMs) {
+        this.submitTimeoutMs = submitTimeoutMs;
+    }
+
+    public String getOutputDir() {
+        return outputDir;
+    }
+
+    public void setOutputDir(String outputDir) {
+        this.outputDir = outputDir;
+    }
+}
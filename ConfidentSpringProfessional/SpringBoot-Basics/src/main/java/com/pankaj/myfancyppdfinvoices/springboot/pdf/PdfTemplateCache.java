@@ -0,0 +1,220 @@
+package com.pankaj.myfancyppdfinvoices.springboot.pdf;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local cache for the PDF templates of a {@link PdfTemplateSource}.
+ * <p>
+ * All templates are downloaded to a local directory on startup, and deleted again on shutdown. A template is first
+ * read through a memory mapped file, so it only takes up page cache. Once it has been used
+ * {@code pdf.templates.cache-promote-after} times it is copied to the heap, unless it is bigger than
+ * {@code pdf.templates.cache-max-entry-size}. When the templates on the heap together exceed
+ * {@code pdf.templates.cache-max-size} the least recently used ones go back to their mapped files. After
+ * {@code pdf.templates.cache-ttl} a template is downloaded again from the source.
+ * The returned buffers are read-only views and can be used by several threads at once.
+ */
+@Component
+public class PdfTemplateCache {
+
+    private final PdfTemplateSource source;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final int promoteAfter;
+    private final long ttlNanos;
+
+    // access ordered, the eldest entry is the least recently used one
+    private final LinkedHashMap<String, CachedTemplate> heapTemplates = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CachedTemplate> mappedTemplates = new ConcurrentHashMap<>();
+    private long heapBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    private Path localDir;
+
+    public PdfTemplateCache(PdfTemplateSource source, PdfTemplateProperties properties, MeterRegistry meterRegistry) {
+        this.source = source;
+        this.maxBytes = properties.getCacheMaxSize().toBytes();
+        this.maxEntryBytes = Math.min(properties.getCacheMaxEntrySize().toBytes(), maxBytes);
+        this.promoteAfter = properties.getCachePromoteAfter();
+        this.ttlNanos = properties.getCacheTtl().toNanos();
+        this.hits = Counter.builder("pdf.templates.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("pdf.templates.cache").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("pdf.templates.cache.evictions").register(meterRegistry);
+        Gauge.builder("pdf.templates.cache.heap.bytes", this, PdfTemplateCache::heapBytes).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        localDir = Files.createTempDirectory("pdf-templates");
+        for (String name : source.list()) {
+            download(name);
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() throws IOException {
+        synchronized (heapTemplates) {
+            heapTemplates.clear();
+            heapBytes = 0;
+        }
+        mappedTemplates.clear();
+        FileSystemUtils.deleteRecursively(localDir);
+    }
+
+    public ByteBuffer get(String name) throws IOException {
+        long now = System.nanoTime();
+        boolean expired = false;
+        synchronized (heapTemplates) {
+            CachedTemplate template = heapTemplates.get(name);
+            if (template != null) {
+                if (!template.isExpired(now, ttlNanos)) {
+                    hits.increment();
+                    return template.content.asReadOnlyBuffer();
+                }
+                removeHeapTemplate(name, template);
+                expired = true;
+            }
+        }
+        CachedTemplate template = mappedTemplates.get(name);
+        if (template != null) {
+            if (!template.isExpired(now, ttlNanos)) {
+                hits.increment();
+                if (template.uses.incrementAndGet() >= promoteAfter && template.mapped.capacity() <= maxEntryBytes
+                        && mappedTemplates.remove(name, template)) {
+                    return promote(name, template, now);
+                }
+                return template.content.asReadOnlyBuffer();
+            }
+            if (mappedTemplates.remove(name, template)) {
+                evictions.increment();
+            }
+            expired = true;
+        }
+        misses.increment();
+        return load(name, expired);
+    }
+
+    private ByteBuffer load(String name, boolean expired) throws IOException {
+        Path file = localFile(name);
+        if (expired || !Files.exists(file)) {
+            // expired, or added to the source after startup
+            download(name);
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed, and after the file is replaced
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CachedTemplate template = new CachedTemplate(mapped, mapped, System.nanoTime());
+        template.uses.set(1);
+        mappedTemplates.put(name, template);
+        return mapped.asReadOnlyBuffer();
+    }
+
+    private ByteBuffer promote(String name, CachedTemplate template, long now) {
+        ByteBuffer content = ByteBuffer.allocate(template.mapped.capacity()).put(template.mapped.duplicate());
+        content.flip();
+        synchronized (heapTemplates) {
+            CachedTemplate previous = heapTemplates.put(name, new CachedTemplate(content, template.mapped,
+                    template.loadedAt));
+            if (previous != null) {
+                heapBytes -= previous.content.capacity();
+            }
+            heapBytes += content.capacity();
+            evict(now);
+        }
+        return content.asReadOnlyBuffer();
+    }
+
+    // callers hold the heapTemplates lock
+    private void evict(long now) {
+        Iterator<Map.Entry<String, CachedTemplate>> iterator = heapTemplates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CachedTemplate> entry = iterator.next();
+            CachedTemplate template = entry.getValue();
+            if (template.isExpired(now, ttlNanos)) {
+                iterator.remove();
+                heapBytes -= template.content.capacity();
+                evictions.increment();
+            } else if (heapBytes > maxBytes) {
+                // still in use, just not as much as the others: back to the mapped file
+                iterator.remove();
+                heapBytes -= template.content.capacity();
+                evictions.increment();
+                mappedTemplates.putIfAbsent(entry.getKey(),
+                        new CachedTemplate(template.mapped, template.mapped, template.loadedAt));
+            }
+        }
+    }
+
+    private void removeHeapTemplate(String name, CachedTemplate template) {
+        heapTemplates.remove(name);
+        heapBytes -= template.content.capacity();
+        evictions.increment();
+    }
+
+    private void download(String name) throws IOException {
+        Path file = localFile(name);
+        try (InputStream in = source.open(name)) {
+            Path tmp = Files.createTempFile(localDir, name, ".download");
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private Path localFile(String name) throws FileNotFoundException {
+        Path file = localDir.resolve(name).normalize();
+        if (!localDir.equals(file.getParent())) {
+            throw new FileNotFoundException("Invalid PDF template name " + name);
+        }
+        return file;
+    }
+
+    private long heapBytes() {
+        synchronized (heapTemplates) {
+            return heapBytes;
+        }
+    }
+
+    private static class CachedTemplate {
+        private final ByteBuffer content;
+        // kept for heap templates too, so they can go back to it when they are evicted
+        private final MappedByteBuffer mapped;
+        private final long loadedAt;
+        private final AtomicInteger uses = new AtomicInteger();
+
+        CachedTemplate(ByteBuffer content, MappedByteBuffer mapped, long loadedAt) {
+            this.content = content;
+            this.mapped = mapped;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isExpired(long now, long ttlNanos) {
+            return now - loadedAt >= ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.pankaj.myfancyppdfinvoices.springboot.pdf;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "pdf.templates")
+public class PdfTemplateProperties {
+    /** Resource location the templates are downloaded from. */
+    private String source = "classpath:/pdf-templates/";
+    /** Upper bound for the templates kept on the heap, all together. */
+    private DataSize cacheMaxSize = DataSize.ofMegabytes(8);
+    /** Templates bigger than this are never copied to the heap, they are always read through a memory mapped file. */
+    private DataSize cacheMaxEntrySize = DataSize.ofMegabytes(1);
+    /** How often a template is used, within its TTL, before it is copied from its memory mapped file to the heap. */
+    private int cachePromoteAfter = 3;
+    /** How long a template stays cached before it is downloaded again from the source. */
+    private Duration cacheTtl = Duration.ofMinutes(10);
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public DataSize getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(DataSize cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+    public DataSize getCacheMaxEntrySize() {
+        return cacheMaxEntrySize;
+    }
+
+    public void setCacheMaxEntrySize(DataSize cacheMaxEntrySize) {
+        this.cacheMaxEntrySize = cacheMaxEntrySize;
+    }
+
+    public int getCachePromoteAfter() {
+        return cachePromoteAfter;
+    }
+
+    public void setCachePromoteAfter(int cachePromoteAfter) {
+        this.cachePromoteAfter = cachePromoteAfter;
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+}
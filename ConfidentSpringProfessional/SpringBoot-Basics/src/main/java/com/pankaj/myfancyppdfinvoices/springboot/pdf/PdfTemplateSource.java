@@ -0,0 +1,16 @@
+package com.pankaj.myfancyppdfinvoices.springboot.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Where the PDF templates come from, e.g. an S3 bucket. Register another implementation as
+ * {@code @Primary} bean to replace the default {@link ResourcePdfTemplateSource}.
+ */
+public interface PdfTemplateSource {
+
+    List<String> list() throws IOException;
+
+    InputStream open(String name) throws IOException;
+}
@@ -0,0 +1,48 @@
+package com.pankaj.myfancyppdfinvoices.springboot.pdf;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads templates from a Spring resource location, {@code pdf.templates.source}. A {@code file:} directory
+ * stands in for S3, the default is the templates bundled under {@code classpath:/pdf-templates/}.
+ */
+@Component
+public class ResourcePdfTemplateSource implements PdfTemplateSource {
+
+    private final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+    private final String location;
+
+    public ResourcePdfTemplateSource(PdfTemplateProperties properties) {
+        String source = properties.getSource();
+        this.location = source.endsWith("/") ? source : source + "/";
+    }
+
+    @Override
+    public List<String> list() throws IOException {
+        List<String> names = new ArrayList<>();
+        for (Resource resource : resolver.getResources(location + "*")) {
+            if (resource.isReadable() && resource.getFilename() != null) {
+                names.add(resource.getFilename());
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        Resource resource = resolver.getResource(location + name);
+        if (!resource.exists()) {
+            throw new FileNotFoundException("No PDF template " + name + " in " + location);
+        }
+        return resource.getInputStream();
+    }
+}
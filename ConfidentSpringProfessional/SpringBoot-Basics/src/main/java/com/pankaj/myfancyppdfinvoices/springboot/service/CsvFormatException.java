@@ -0,0 +1,11 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+/**
+ * The CSV is broken beyond skipping a row, e.g. the header does not name the columns that are needed.
+ */
+public class CsvFormatException extends RuntimeException {
+
+    public CsvFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,140 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchive;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes every invoice to an output stream as CSV or as newline-delimited JSON, row by row while
+ * {@link InvoiceService#streamAll} reads them, so an export of any size runs in constant memory. The invoices in
+ * the {@link InvoiceArchive} follow those in the database. An invoice the archiver moves during the export can be
+ * written twice, but is never left out.
+ */
+@Component
+public class InvoiceExportService {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String fileExtension;
+
+        Format(String contentType, String fileExtension) {
+            this.contentType = contentType;
+            this.fileExtension = fileExtension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InvoiceService invoiceService;
+    private final InvoiceArchive invoiceArchive;
+    private final ObjectMapper objectMapper;
+
+    public InvoiceExportService(InvoiceService invoiceService, InvoiceArchive invoiceArchive,
+                                ObjectMapper objectMapper) {
+        this.invoiceService = invoiceService;
+        this.invoiceArchive = invoiceArchive;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes all invoices and flushes, but does not close {@code out}.
+     */
+    public void export(Format format, OutputStream out) throws IOException {
+        try {
+            if (format == Format.CSV) {
+                exportCsv(out);
+            } else {
+                exportNdjson(out);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void exportCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write("id,user_id,amount,status,pdf_url\n");
+        forEachInvoice(invoice -> {
+            try {
+                writer.write(invoice.getId());
+                writer.write(',');
+                writeCsvField(writer, invoice.getUserId());
+                writer.write(',');
+                writer.write(String.valueOf(invoice.getAmount()));
+                writer.write(',');
+                writer.write(invoice.getStatus().name());
+                writer.write(',');
+                writeCsvField(writer, invoice.getPdfUrl());
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private void exportNdjson(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        forEachInvoice(invoice -> {
+            try {
+                generator.writeObject(invoice);
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        generator.close();
+    }
+
+    // the database first: the archiver publishes a segment before it deletes the invoices in it
+    private void forEachInvoice(Consumer<Invoice> consumer) {
+        invoiceService.streamAll(consumer);
+        if (invoiceArchive.isEnabled()) {
+            invoiceArchive.forEach(consumer);
+        }
+    }
+
+    /**
+     * Nulls become empty fields; fields with a comma, quote or line break are quoted.
+     */
+    static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
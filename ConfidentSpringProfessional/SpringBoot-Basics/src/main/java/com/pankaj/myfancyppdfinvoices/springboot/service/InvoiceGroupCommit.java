@@ -0,0 +1,206 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.pankaj.myfancyppdfinvoices.springboot.dto.InvoiceDto;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for single invoices: with {@code invoices.group-commit.enabled}, concurrent {@link #create} calls
+ * are queued and one writer thread stores them together with {@link InvoiceService#createAll}, in one transaction.
+ * <p>
+ * The writer takes whatever is queued and then waits at most {@code invoices.group-commit.window-ms} for more, up to
+ * {@code invoices.group-commit.max-size} invoices. While it commits, new calls queue up for the next batch, so the
+ * busier it gets the bigger the batches, and throughput grows with concurrency instead of stopping at the commit
+ * rate. Each caller's future completes once its batch has committed. If the database refuses the batch its invoices
+ * are stored one by one, so only the invoice at fault fails. At most {@code invoices.group-commit.queue-capacity}
+ * invoices may wait; beyond that, and after {@link #shutDown}, calls fail with a {@link RejectedExecutionException}.
+ * Invoices queued before {@link #shutDown} are still committed.
+ */
+@Component
+public class InvoiceGroupCommit {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceGroupCommit.class);
+
+    /** Queued by {@link #shutDown} behind the last accepted invoice, the writer stops once it has committed it. */
+    private static final PendingInvoice SHUT_DOWN = new PendingInvoice(null);
+
+    private static final long SHUT_DOWN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final InvoiceService invoiceService;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxSize;
+    private final BlockingQueue<PendingInvoice> queue;
+    private final DistributionSummary batchSizes;
+    private final Thread writer;
+    private volatile boolean shutDown;
+
+    public InvoiceGroupCommit(InvoiceService invoiceService, MeterRegistry meterRegistry,
+                              @Value("${invoices.group-commit.enabled:false}") boolean enabled,
+                              @Value("${invoices.group-commit.window-ms:2}") long windowMs,
+                              @Value("${invoices.group-commit.max-size:500}") int maxSize,
+                              @Value("${invoices.group-commit.queue-capacity:10000}") int queueCapacity) {
+        this.invoiceService = invoiceService;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxSize = maxSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSizes = DistributionSummary.builder("invoices.group-commit.batch.size")
+                .description("Invoices stored by one group commit")
+                .register(meterRegistry);
+        this.writer = new Thread(this::writeBatches, "invoice-group-commit");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            writer.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the invoice for the next group commit. The future completes with the stored invoice, like the one
+     * {@link InvoiceService#create} returns, once it is committed.
+     */
+    public CompletableFuture<Invoice> create(String userId, Integer amount) {
+        if (!enabled) {
+            throw new IllegalStateException("Group commit is disabled, see invoices.group-commit.enabled");
+        }
+        InvoiceDto invoiceDto = new InvoiceDto();
+        invoiceDto.setUserId(userId);
+        invoiceDto.setAmount(amount);
+        PendingInvoice pending = new PendingInvoice(invoiceDto);
+        if (shutDown) {
+            throw new RejectedExecutionException("Shutting down");
+        }
+        if (!queue.offer(pending)) {
+            throw new RejectedExecutionException("Too many invoices waiting for a group commit");
+        }
+        // shut down in between: if the writer has not taken the invoice, nobody will
+        if (shutDown && queue.remove(pending)) {
+            throw new RejectedExecutionException("Shutting down");
+        }
+        return pending.future;
+    }
+
+    private void writeBatches() {
+        List<PendingInvoice> batch = new ArrayList<>(maxSize);
+        boolean stopping = false;
+        try {
+            while (!stopping) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxSize - batch.size());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxSize && !batch.contains(SHUT_DOWN)) {
+                    PendingInvoice next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxSize - batch.size());
+                }
+                stopping = batch.remove(SHUT_DOWN);
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // shutDown gave up waiting
+            Thread.currentThread().interrupt();
+        }
+        // whatever create() queued after the shutdown signal
+        RejectedExecutionException shutdown = new RejectedExecutionException("Shutting down");
+        queue.drainTo(batch);
+        batch.forEach(pending -> pending.future.completeExceptionally(shutdown));
+    }
+
+    private void commit(List<PendingInvoice> batch) {
+        List<InvoiceDto> invoiceDtos = new ArrayList<>(batch.size());
+        for (PendingInvoice pending : batch) {
+            invoiceDtos.add(pending.invoiceDto);
+        }
+        List<String> ids;
+        try {
+            ids = invoiceService.createAll(invoiceDtos);
+        } catch (DataAccessException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.warn("Group commit of {} invoices failed, storing them one by one", batch.size(), e);
+            for (PendingInvoice pending : batch) {
+                commit(Collections.singletonList(pending));
+            }
+            return;
+        } catch (RuntimeException e) {
+            // e.g. the PDF rendering queue is full, the invoices themselves are fine
+            log.warn("Group commit of {} invoices failed", batch.size(), e);
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        }
+        batchSizes.record(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingInvoice pending = batch.get(i);
+            Invoice invoice = new Invoice();
+            invoice.setId(ids.get(i));
+            invoice.setUserId(pending.invoiceDto.getUserId());
+            invoice.setAmount(pending.invoiceDto.getAmount());
+            invoice.setStatus(InvoiceStatus.PENDING);
+            pending.future.complete(invoice);
+        }
+    }
+
+    /**
+     * Stops accepting invoices and lets the writer commit the ones already queued, including the batch it is
+     * committing. The writer is only interrupted if it has not finished within 10 seconds.
+     */
+    @PreDestroy
+    public void shutDown() throws InterruptedException {
+        shutDown = true;
+        if (!writer.isAlive()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + SHUT_DOWN_TIMEOUT_MILLIS;
+        if (queue.offer(SHUT_DOWN, SHUT_DOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        if (writer.isAlive()) {
+            log.warn("Group commit writer did not finish within {} ms, interrupting it", SHUT_DOWN_TIMEOUT_MILLIS);
+            writer.interrupt();
+            writer.join(TimeUnit.SECONDS.toMillis(1));
+        }
+    }
+
+    private static class PendingInvoice {
+        private final InvoiceDto invoiceDto;
+        private final CompletableFuture<Invoice> future = new CompletableFuture<>();
+
+        PendingInvoice(InvoiceDto invoiceDto) {
+            this.invoiceDto = invoiceDto;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.pankaj.myfancyppdfinvoices.springboot.dto.InvoiceDto;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceImportProgress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Imports invoices from CSV with a header row naming (at least) the {@code user_id} and {@code amount} columns.
+ * <p>
+ * The input is read as a stream and every {@code invoices.import.chunk-size} valid rows are stored with
+ * {@link InvoiceService#createAll}, in their own transaction and in JDBC batches, so neither memory use nor
+ * transaction size grow with the file. A failure leaves the chunks before it committed; once progress has been
+ * reported it ends the import with a last report that is {@code done} and names the {@code error}. Rows are
+ * validated like {@link InvoiceDto} in a POST; invalid ones are skipped and reported, with their line number, in
+ * the last progress report.
+ * <p>
+ * Imported invoices get their PDFs rendered like any other. When the rendering queue is full the chunk is retried
+ * up to {@code invoices.import.busy-retries} times, so rendering sets the pace of a large import. A record longer than
+ * {@code invoices.import.max-record-length} characters, usually from an unclosed quote, ends the import with an error.
+ */
+@Component
+public class InvoiceImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final InvoiceService invoiceService;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int busyRetries;
+    private final int maxRecordLength;
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+
+    public InvoiceImportService(InvoiceService invoiceService, Validator validator, MeterRegistry meterRegistry,
+                                @Value("${invoices.import.chunk-size:5000}") int chunkSize,
+                                @Value("${invoices.import.busy-retries:30}") int busyRetries,
+                                @Value("${invoices.import.max-record-length:65536}") int maxRecordLength) {
+        this.invoiceService = invoiceService;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.busyRetries = busyRetries;
+        this.maxRecordLength = maxRecordLength;
+        this.importedRows = Counter.builder("invoices.import.rows").tag("outcome", "imported").register(meterRegistry);
+        this.rejectedRows = Counter.builder("invoices.import.rows").tag("outcome", "rejected").register(meterRegistry);
+    }
+
+    /**
+     * Imports the CSV and hands a progress report to {@code progress} after every chunk, and a final one that is
+     * {@code done}. When the import fails after the first report the failure is logged and handed over as the
+     * {@code error} of the final report instead, as whoever reads the reports has already been answered.
+     *
+     * @throws CsvFormatException if the header lacks one of the required columns
+     */
+    public InvoiceImportProgress importCsv(Reader csv, Consumer<InvoiceImportProgress> progress) throws IOException {
+        long start = System.currentTimeMillis();
+        long rows = 0;
+        long imported = 0;
+        List<String> errors = new ArrayList<>();
+        long rejected = 0;
+
+        boolean reported = false;
+
+        try (CsvReader reader = new CsvReader(csv, maxRecordLength)) {
+            List<String> header = reader.next();
+            int userIdColumn = column(header, "user_id");
+            int amountColumn = column(header, "amount");
+
+            List<InvoiceDto> chunk = new ArrayList<>(chunkSize);
+            while (true) {
+                List<String> record;
+                try {
+                    record = reader.next();
+                } catch (CsvFormatException e) {
+                    // an unclosed quote or a record over invoices.import.max-record-length, nothing after it can be read
+                    rows++;
+                    rejected++;
+                    rejectedRows.increment();
+                    addError(errors, e.getMessage());
+                    break;
+                }
+                if (record == null) {
+                    break;
+                }
+                rows++;
+                String error = validate(record, userIdColumn, amountColumn, chunk);
+                if (error != null) {
+                    rejected++;
+                    rejectedRows.increment();
+                    addError(errors, "Line " + reader.recordLine() + ": " + error);
+                }
+                if (chunk.size() == chunkSize) {
+                    imported += store(chunk);
+                    progress.accept(new InvoiceImportProgress(rows, imported, rejected,
+                            System.currentTimeMillis() - start, false, null));
+                    reported = true;
+                }
+            }
+            imported += store(chunk);
+        } catch (IOException | RuntimeException e) {
+            if (!reported) {
+                throw e;
+            }
+            log.error("Invoice import failed after {} of {} rows", imported, rows, e);
+            InvoiceImportProgress result = new InvoiceImportProgress(rows, imported, rejected,
+                    System.currentTimeMillis() - start, true, errors);
+            result.setError(e.getClass().getSimpleName() + ": " + e.getMessage());
+            progress.accept(result);
+            return result;
+        }
+
+        InvoiceImportProgress result = new InvoiceImportProgress(rows, imported, rejected,
+                System.currentTimeMillis() - start, true, errors);
+        log.info("Imported {} of {} invoice rows in {}ms, {} rejected", imported, rows, result.getElapsedMs(), rejected);
+        progress.accept(result);
+        return result;
+    }
+
+    /**
+     * Adds the row to the chunk if it is valid, otherwise returns why it is not.
+     */
+    private String validate(List<String> record, int userIdColumn, int amountColumn, List<InvoiceDto> chunk) {
+        if (record.size() <= Math.max(userIdColumn, amountColumn)) {
+            return "expected at least " + (Math.max(userIdColumn, amountColumn) + 1) + " fields, got " + record.size();
+        }
+        InvoiceDto invoiceDto = new InvoiceDto();
+        invoiceDto.setUserId(record.get(userIdColumn).trim());
+        String amount = record.get(amountColumn).trim();
+        try {
+            invoiceDto.setAmount(amount.isEmpty() ? null : Integer.valueOf(amount));
+        } catch (NumberFormatException e) {
+            return "amount '" + amount + "' is not a number";
+        }
+        Set<ConstraintViolation<InvoiceDto>> violations = validator.validate(invoiceDto);
+        if (!violations.isEmpty()) {
+            StringBuilder message = new StringBuilder();
+            for (ConstraintViolation<InvoiceDto> violation : violations) {
+                message.append(message.length() == 0 ? "" : ", ")
+                        .append(violation.getPropertyPath()).append(' ').append(violation.getMessage());
+            }
+            return message.toString();
+        }
+        chunk.add(invoiceDto);
+        return null;
+    }
+
+    private int store(List<InvoiceDto> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        int size = chunk.size();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                invoiceService.createAll(chunk);
+                break;
+            } catch (RejectedExecutionException e) {
+                // the PDF rendering queue is full and the chunk was rolled back; createAll waited a while already
+                if (attempt == busyRetries) {
+                    throw e;
+                }
+            }
+        }
+        chunk.clear();
+        importedRows.increment(size);
+        return size;
+    }
+
+    private static int column(List<String> header, String name) {
+        if (header != null) {
+            for (int i = 0; i < header.size(); i++) {
+                // Excel starts UTF-8 files with a byte order mark
+                if (header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT).equals(name)) {
+                    return i;
+                }
+            }
+        }
+        throw new CsvFormatException("The CSV header must name the user_id and amount columns, got " + header);
+    }
+
+    private static void addError(List<String> errors, String error) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+}
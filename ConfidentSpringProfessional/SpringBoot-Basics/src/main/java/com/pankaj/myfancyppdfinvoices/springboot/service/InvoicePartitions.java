@@ -0,0 +1,210 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Knows which table an invoice is stored in. By default that is always the {@code invoices} table.
+ * <p>
+ * With {@code invoices.partitioning.enabled} every month gets a table of its own, {@code invoices_yyyy_mm} (UTC), and
+ * the {@code invoices} table only keeps the invoices from before, whose random ids carry no creation time. The month
+ * is read from the time-ordered id, so the table of an invoice follows from its id alone, and every month is one
+ * contiguous id range: keyset pages and date ranges only touch the tables whose range they overlap, and a month is
+ * dropped as a whole with a single {@code DROP TABLE}.
+ * <p>
+ * The tables of the current and the next month are created at startup, any other one when its first invoice is
+ * stored. H2 commits the current transaction on DDL, so tables are created in a transaction of their own.
+ */
+@Component
+public class InvoicePartitions {
+
+    public static final String UNPARTITIONED_TABLE = "invoices";
+
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern PARTITION_TABLE = Pattern.compile("INVOICES_(\\d{4})_(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate ddlTransaction;
+    private final boolean enabled;
+    private final NavigableMap<YearMonth, String> partitions = new ConcurrentSkipListMap<>();
+
+    public InvoicePartitions(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             @Value("${invoices.partitioning.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ddlTransaction = new TransactionTemplate(transactionManager);
+        this.ddlTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void loadPartitions() {
+        if (!enabled) {
+            return;
+        }
+        List<String> tables = jdbcTemplate.queryForList(
+                "select table_name from information_schema.tables where table_schema = schema()", String.class);
+        for (String table : tables) {
+            Matcher matcher = PARTITION_TABLE.matcher(table.toUpperCase(Locale.ROOT));
+            if (matcher.matches()) {
+                YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                partitions.put(month, table.toLowerCase(Locale.ROOT));
+            }
+        }
+        YearMonth now = YearMonth.now(ZoneOffset.UTC);
+        partition(now);
+        partition(now.plusMonths(1));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The table the invoice with this id goes into, created first if it is the first invoice of its month.
+     */
+    public String tableFor(UUID id) {
+        if (!enabled || !InvoiceIds.isTimeOrdered(id)) {
+            return UNPARTITIONED_TABLE;
+        }
+        return partition(YearMonth.from(InvoiceIds.createdAt(id).atOffset(ZoneOffset.UTC)));
+    }
+
+    /**
+     * The tables that can hold the invoice with this id, without creating any: the {@code invoices} table, which
+     * has the ones from before partitioning, and the table of the id's month if there is one.
+     */
+    public List<String> tablesFor(UUID id) {
+        if (!enabled || !InvoiceIds.isTimeOrdered(id)) {
+            return Collections.singletonList(UNPARTITIONED_TABLE);
+        }
+        String table = partitions.get(YearMonth.from(InvoiceIds.createdAt(id).atOffset(ZoneOffset.UTC)));
+        return table != null ? Arrays.asList(table, UNPARTITIONED_TABLE) : Collections.singletonList(UNPARTITIONED_TABLE);
+    }
+
+    /**
+     * Every table, the {@code invoices} table first and then the months in order.
+     */
+    public List<String> tables() {
+        List<String> tables = new ArrayList<>(partitions.size() + 1);
+        tables.add(UNPARTITIONED_TABLE);
+        tables.addAll(partitions.values());
+        return tables;
+    }
+
+    /**
+     * The tables that can hold ids greater than {@code after} (all of them if it is null), in the order of
+     * {@link #tables()}. The {@code invoices} table is always among them, its random ids can be anywhere.
+     */
+    public List<String> tablesAfter(UUID after) {
+        if (after == null) {
+            return tables();
+        }
+        List<String> tables = new ArrayList<>();
+        tables.add(UNPARTITIONED_TABLE);
+        for (Map.Entry<YearMonth, String> partition : partitions.entrySet()) {
+            if (InvoiceIds.lowerBound(start(partition.getKey().plusMonths(1))).compareTo(after) > 0) {
+                tables.add(partition.getValue());
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * The tables holding the invoices created from {@code from} (inclusive) to {@code to} (exclusive), in order.
+     * Without partitioning that is the {@code invoices} table, otherwise only the months the range overlaps: the
+     * invoices in the {@code invoices} table have no creation time.
+     */
+    public List<String> tablesBetween(Instant from, Instant to) {
+        if (!enabled) {
+            return Collections.singletonList(UNPARTITIONED_TABLE);
+        }
+        List<String> tables = new ArrayList<>();
+        for (Map.Entry<YearMonth, String> partition : partitions.entrySet()) {
+            YearMonth month = partition.getKey();
+            if (start(month).isBefore(to) && start(month.plusMonths(1)).isAfter(from)) {
+                tables.add(partition.getValue());
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * The table of the given month, or null if it has none.
+     */
+    public String table(YearMonth month) {
+        return partitions.get(month);
+    }
+
+    /**
+     * The months that have a table, oldest first.
+     */
+    public NavigableSet<YearMonth> months() {
+        return partitions.navigableKeySet();
+    }
+
+    /**
+     * Drops the table of the given month, with all its invoices. Returns false if there is none. The current month
+     * can't be dropped, its table is still being written to. The table is dropped before the month is forgotten and
+     * under the lock that creates tables, so a late invoice of the month can't bring back an empty one meanwhile.
+     */
+    public synchronized boolean drop(YearMonth month) {
+        if (!month.isBefore(YearMonth.now(ZoneOffset.UTC))) {
+            throw new IllegalArgumentException("Only months before the current one can be dropped, not " + month);
+        }
+        String table = partitions.get(month);
+        if (table == null) {
+            return false;
+        }
+        ddlTransaction.executeWithoutResult(status -> jdbcTemplate.execute("drop table if exists " + table));
+        partitions.remove(month);
+        return true;
+    }
+
+    private String partition(YearMonth month) {
+        String table = partitions.get(month);
+        return table != null ? table : createPartition(month);
+    }
+
+    private synchronized String createPartition(YearMonth month) {
+        String existing = partitions.get(month);
+        if (existing != null) {
+            return existing;
+        }
+        String table = UNPARTITIONED_TABLE + "_" + month.format(MONTH_SUFFIX);
+        ddlTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.execute("create table if not exists " + table + " ("
+                    + "id uuid primary key, pdf_url varchar(255), user_id varchar(255), amount int, "
+                    + "status varchar(16) default 'READY')");
+            jdbcTemplate.execute("create index if not exists " + table + "_user_id_idx on " + table + " (user_id, id)");
+        });
+        partitions.put(month, table);
+        return table;
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
@@ -1,90 +1,335 @@
 package com.pankaj.myfancyppdfinvoices.springboot.service;
 
 
+import com.pankaj.myfancyppdfinvoices.springboot.CachingConfiguration;
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchive;
+import com.pankaj.myfancyppdfinvoices.springboot.dto.InvoiceDto;
 import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceTotals;
 import com.pankaj.myfancyppdfinvoices.springboot.model.User;
+import com.pankaj.myfancyppdfinvoices.springboot.pdf.PdfRenderingPipeline;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
 import java.sql.PreparedStatement;
-import java.sql.Statement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 @Component
+@CacheConfig(keyGenerator = CachingConfiguration.INVOICES_KEY_GENERATOR)
 public class InvoiceService {
 
+    /**
+     * Holds the results of the find methods, keyed by the {@link InvoicesVersion} they were read at. Every write to
+     * the invoices table clears it.
+     */
+    public static final String INVOICES_CACHE = "invoices";
+
+    // rows per round trip for streamAll, whose callers read the whole table
+    private static final int STREAM_FETCH_SIZE = 5000;
+
+    private static final String COLUMNS = "id,user_id,pdf_url,amount,status";
+    private static final Comparator<Invoice> BY_ID = Comparator.comparing(invoice -> UUID.fromString(invoice.getId()));
+
     private final JdbcTemplate jdbcTemplate;
     private final UserService userService;
-    private final String cdnUrl;
-    private List<Invoice> invoices = new CopyOnWriteArrayList<>();
+    private final PdfRenderingPipeline pdfRenderingPipeline;
+    private final InvoiceTotalsService invoiceTotalsService;
+    private final InvoicesVersion invoicesVersion;
+    private final InvoicePartitions invoicePartitions;
+    private final InvoiceArchive invoiceArchive;
+    private final int batchChunkSize;
+    private final DistributionSummary findAllRows;
+    private final DistributionSummary findPageRows;
+    private final DistributionSummary findByUserIdRows;
+    private final DistributionSummary streamAllRows;
+    private final DistributionSummary findCreatedBetweenRows;
 
     // @Autowired // optional in newer spring evrsion as Component scan can detect
     public InvoiceService(JdbcTemplate jdbcTemplate, UserService userService,
-                          @Value("${cdn.url}") String cdnUrl) {
+                          PdfRenderingPipeline pdfRenderingPipeline, InvoiceTotalsService invoiceTotalsService,
+                          InvoicesVersion invoicesVersion, InvoicePartitions invoicePartitions,
+                          InvoiceArchive invoiceArchive, MeterRegistry meterRegistry,
+                          @Value("${invoices.batch.chunk-size:500}") int batchChunkSize) {
         this.jdbcTemplate = jdbcTemplate;
         this.userService = userService;
-        this.cdnUrl = cdnUrl;
+        this.pdfRenderingPipeline = pdfRenderingPipeline;
+        this.invoiceTotalsService = invoiceTotalsService;
+        this.invoicesVersion = invoicesVersion;
+        this.invoicePartitions = invoicePartitions;
+        this.invoiceArchive = invoiceArchive;
+        this.batchChunkSize = batchChunkSize;
+        this.findAllRows = rowsSummary(meterRegistry, "findAll");
+        this.findPageRows = rowsSummary(meterRegistry, "findPage");
+        this.findByUserIdRows = rowsSummary(meterRegistry, "findByUserId");
+        this.streamAllRows = rowsSummary(meterRegistry, "streamAll");
+        this.findCreatedBetweenRows = rowsSummary(meterRegistry, "findCreatedBetween");
     }
 
-    @PostConstruct
-    public void init(){
-        System.out.println("Fetching PDF templates from S3...");
-        //TODO download from S3 and save locally
+    @Cacheable(INVOICES_CACHE)
+    @Timed("invoices.service")
+    @Transactional
+    public List<Invoice> findAll(){
+        List<Invoice> invoices = new ArrayList<>();
+        for (String table : invoicePartitions.tables()) {
+            invoices.addAll(jdbcTemplate.query("select " + COLUMNS + " from " + table,(resultSet,rowNum)->toInvoice(resultSet)));
+        }
+        findAllRows.record(invoices.size());
+        return invoices;
     }
 
-    @PreDestroy
-    public void shutDown(){
-        System.out.println("Deleting downloaded templates ...");
-        //TODO : Actual deletion of pdfs
+    /**
+     * Keyset pagination: returns at most {@code limit} invoices ordered by id, starting right after
+     * the given id (or from the beginning if {@code after} is null). Use the id of the last invoice
+     * of a page as {@code after} for the next one.
+     */
+    @Cacheable(INVOICES_CACHE)
+    @Timed("invoices.service")
+    @Transactional(readOnly = true)
+    public List<Invoice> findPage(UUID after, int limit){
+        List<Invoice> invoices = queryPage(invoicePartitions.tablesAfter(after), null, null, after, limit);
+        findPageRows.record(invoices.size());
+        return invoices;
     }
-    @Transactional
-    public List<Invoice> findAll(){
-        System.out.println("Is a database Transaction open ? = " + TransactionSynchronizationManager.isActualTransactionActive());
-        return jdbcTemplate.query("select id,user_id,pdf_url,amount from invoices",(resultSet,rowNum)->{
-           Invoice invoice = new Invoice();
-           invoice.setId(resultSet.getObject("id").toString());
-           invoice.setPdfUrl(resultSet.getString("pdf_url"));
-           invoice.setUserId(resultSet.getString("user_id"));
-           invoice.setAmount(resultSet.getInt("amount"));
-           return invoice;
-        });
+
+    /**
+     * Keyset pagination over the invoices of one user, ordered by id. Served from the
+     * {@code (user_id, id)} index, so the cost depends on the page size and not on the size of the table.
+     */
+    @Cacheable(INVOICES_CACHE)
+    @Timed("invoices.service")
+    @Transactional(readOnly = true)
+    public List<Invoice> findByUserId(String userId, UUID after, int limit){
+        List<Invoice> invoices = queryPage(invoicePartitions.tablesAfter(after), "user_id = ?",
+                new Object[]{userId}, after, limit);
+        findByUserIdRows.record(invoices.size());
+        return invoices;
+    }
+
+    /**
+     * Keyset pagination over the invoices created from {@code from} (inclusive) to {@code to} (exclusive), ordered
+     * by id and so by creation time. The creation time is read from the time-ordered id, which makes this a range
+     * scan on the primary key; with partitioning only the tables of the months in range are read. Invoices with
+     * random ids, from before ids were time-ordered, have no creation time and are never returned.
+     * <p>
+     * Without {@code to} the range ends now. Such pages are not cached, every one would be a cache entry of its own.
+     */
+    @Cacheable(value = INVOICES_CACHE, condition = "#to != null")
+    @Timed("invoices.service")
+    @Transactional(readOnly = true)
+    public List<Invoice> findCreatedBetween(Instant from, Instant to, UUID after, int limit){
+        if (to == null) {
+            to = Instant.now();
+        }
+        UUID lowest = InvoiceIds.lowerBound(from);
+        List<Invoice> invoices = queryPage(invoicePartitions.tablesBetween(from, to), "id >= ? and id < ?",
+                new Object[]{lowest, InvoiceIds.lowerBound(to)},
+                after == null || after.compareTo(lowest) < 0 ? null : after, limit);
+        invoices.removeIf(invoice -> !InvoiceIds.isTimeOrdered(UUID.fromString(invoice.getId())));
+        findCreatedBetweenRows.record(invoices.size());
+        return invoices;
+    }
+
+    /**
+     * The invoice with this id, or null if there is none. Invoices that were moved to the {@link InvoiceArchive}
+     * are read from there when the database doesn't have them. Misses are not cached, so lookups of unknown ids
+     * can't crowd the invoices out of the cache.
+     */
+    @Cacheable(value = INVOICES_CACHE, unless = "#result == null")
+    @Timed("invoices.service")
+    @Transactional(readOnly = true)
+    public Invoice findById(UUID id){
+        for (String table : invoicePartitions.tablesFor(id)) {
+            List<Invoice> invoices = jdbcTemplate.query("select " + COLUMNS + " from " + table + " where id = ?",
+                    (resultSet, rowNum) -> toInvoice(resultSet), id);
+            if (!invoices.isEmpty()) {
+                return invoices.get(0);
+            }
+        }
+        return invoiceArchive.find(id);
+    }
+
+    /**
+     * Hands every invoice to the consumer as it comes off the ResultSet, without collecting them
+     * into a list first, so memory use does not depend on the size of the table.
+     */
+    @Timed("invoices.service")
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Invoice> consumer){
+        long[] rows = new long[1];
+        for (String table : invoicePartitions.tables()) {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "select " + COLUMNS + " from " + table,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(STREAM_FETCH_SIZE);
+                return ps;
+            }, resultSet -> {
+                consumer.accept(toInvoice(resultSet));
+                rows[0]++;
+            });
+        }
+        streamAllRows.record(rows[0]);
     }
 
+    /**
+     * Stores the invoice as {@link InvoiceStatus#PENDING} and returns right away, the PDF is rendered
+     * in the background once the transaction has committed. The id is a time-ordered {@link InvoiceIds} id made
+     * here, so there are no generated keys to read back.
+     */
+    @CacheEvict(value = INVOICES_CACHE, allEntries = true)
+    @Timed("invoices.service")
     @Transactional
     public Invoice create(String userId, Integer amount) {
-        System.out.println("Is a Transaction open ? = " + TransactionSynchronizationManager.isActualTransactionActive());
-        String generatedPdfUrl = cdnUrl + "/images/default/sample.pdf";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(
-                    "insert into invoices (user_id,pdf_url,amount) values(?,?,?)",
-                    Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, userId);
-            ps.setString(2, generatedPdfUrl);
-            ps.setInt(3, amount);
-            return ps;
-        }, keyHolder);
-
-        String uuid = !keyHolder.getKeys().isEmpty() ?
-                ((UUID) keyHolder.getKeys().values().iterator().next()).toString()
-                : null;
-        Invoice invoice = new Invoice();
-        invoice.setId(uuid);
-        invoice.setPdfUrl(generatedPdfUrl);
-        invoice.setAmount(amount);
-        invoice.setUserId(userId);
+        Invoice invoice = new Invoice(userId, amount, null);
+        invoice.setStatus(InvoiceStatus.PENDING);
+        UUID id = UUID.fromString(invoice.getId());
+        jdbcTemplate.update("insert into " + invoicePartitions.tableFor(id) + " (id,user_id,amount,status) values(?,?,?,?)",
+                id, userId, amount, InvoiceStatus.PENDING.name());
+
+        invoiceTotalsService.add(Collections.singletonList(invoice));
+        invoicesVersion.bump();
+        pdfRenderingPipeline.submit(Collections.singletonList(invoice));
         return invoice;
     }
 
+    /**
+     * Inserts all invoices in one transaction, sending them to the database in JDBC batches of
+     * {@code invoices.batch.chunk-size} rows. The ids are generated here instead of by the database
+     * (batched statements can't hand back generated keys) and returned in the order of the input. Being
+     * time-ordered, they also go in at the end of the primary key index.
+     */
+    @CacheEvict(value = INVOICES_CACHE, allEntries = true)
+    @Timed("invoices.service")
+    @Transactional
+    public List<String> createAll(List<InvoiceDto> invoiceDtos) {
+        List<Invoice> newInvoices = new ArrayList<>(invoiceDtos.size());
+        // one batch per table, normally all of them go into the current month
+        Map<String, List<Invoice>> perTable = new LinkedHashMap<>();
+        for (InvoiceDto invoiceDto : invoiceDtos) {
+            Invoice invoice = new Invoice(invoiceDto.getUserId(), invoiceDto.getAmount(), null);
+            invoice.setStatus(InvoiceStatus.PENDING);
+            newInvoices.add(invoice);
+            perTable.computeIfAbsent(invoicePartitions.tableFor(UUID.fromString(invoice.getId())),
+                    table -> new ArrayList<>()).add(invoice);
+        }
+        perTable.forEach((table, invoices) -> jdbcTemplate.batchUpdate(
+                "insert into " + table + " (id,user_id,amount,status) values(?,?,?,?)",
+                invoices, batchChunkSize, (ps, invoice) -> {
+                    ps.setObject(1, UUID.fromString(invoice.getId()));
+                    ps.setString(2, invoice.getUserId());
+                    ps.setInt(3, invoice.getAmount());
+                    ps.setString(4, invoice.getStatus().name());
+                }));
+        invoiceTotalsService.add(newInvoices);
+        invoicesVersion.bump();
+        pdfRenderingPipeline.submit(newInvoices);
+
+        List<String> ids = new ArrayList<>(newInvoices.size());
+        for (Invoice invoice : newInvoices) {
+            ids.add(invoice.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Drops all invoices created in the given month, with partitioning a single {@code DROP TABLE}, and takes
+     * them out of the users' totals, in one transaction with reading them. DDL commits by itself though, so if the
+     * totals can't be updated after the drop, rebuild them.
+     */
+    @CacheEvict(value = INVOICES_CACHE, allEntries = true)
+    @Timed("invoices.service")
+    @Transactional
+    public boolean dropMonth(YearMonth month) {
+        if (!invoicePartitions.isEnabled()) {
+            throw new IllegalStateException("Months can only be dropped with invoices.partitioning.enabled");
+        }
+        String table = invoicePartitions.table(month);
+        if (table == null) {
+            return false;
+        }
+        List<InvoiceTotals> dropped = invoiceTotalsService.sumPerUser(table);
+        boolean droppedTable = invoicePartitions.drop(month);
+        invoiceTotalsService.remove(dropped);
+        invoicesVersion.bump();
+        return droppedTable;
+    }
+
+    /**
+     * Runs the keyset query on each table and returns the first {@code limit} invoices by id. The months hold
+     * disjoint id ranges in order, so they are queried one after the other until the page is full. Only the
+     * {@code invoices} table, which comes first, can hold ids from anywhere and is merged in.
+     */
+    private List<Invoice> queryPage(List<String> tables, String condition, Object[] conditionArgs, UUID after, int limit) {
+        List<Invoice> page = new ArrayList<>();
+        boolean merge = false;
+        int fromPartitions = 0;
+        for (String table : tables) {
+            boolean unpartitioned = InvoicePartitions.UNPARTITIONED_TABLE.equals(table);
+            int wanted = unpartitioned ? limit : limit - fromPartitions;
+            if (wanted <= 0) {
+                break;
+            }
+            List<Object> args = new ArrayList<>();
+            StringBuilder sql = new StringBuilder("select " + COLUMNS + " from " + table);
+            if (condition != null) {
+                sql.append(" where ").append(condition);
+                Collections.addAll(args, conditionArgs);
+            }
+            if (after != null) {
+                sql.append(condition != null ? " and" : " where").append(" id > ?");
+                args.add(after);
+            }
+            sql.append(" order by id limit ?");
+            args.add(wanted);
+            List<Invoice> rows = jdbcTemplate.query(sql.toString(), (resultSet, rowNum) -> toInvoice(resultSet), args.toArray());
+            merge |= unpartitioned && !rows.isEmpty() && tables.size() > 1;
+            if (!unpartitioned) {
+                fromPartitions += rows.size();
+            }
+            page.addAll(rows);
+        }
+        if (merge) {
+            page.sort(BY_ID);
+            return new ArrayList<>(page.subList(0, Math.min(limit, page.size())));
+        }
+        return page;
+    }
 
+    private static DistributionSummary rowsSummary(MeterRegistry meterRegistry, String method) {
+        return DistributionSummary.builder("invoices.rows")
+                .description("Invoices returned by one call")
+                .tag("method", method)
+                .register(meterRegistry);
+    }
 
+    private static Invoice toInvoice(ResultSet resultSet) throws SQLException {
+        Invoice invoice = new Invoice();
+        invoice.setId(resultSet.getObject("id").toString());
+        invoice.setPdfUrl(resultSet.getString("pdf_url"));
+        invoice.setUserId(resultSet.getString("user_id"));
+        invoice.setAmount(resultSet.getInt("amount"));
+        invoice.setStatus(InvoiceStatus.valueOf(resultSet.getString("status")));
+        return invoice;
+    }
 }
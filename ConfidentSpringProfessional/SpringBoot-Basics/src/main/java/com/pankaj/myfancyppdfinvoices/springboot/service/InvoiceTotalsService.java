@@ -0,0 +1,210 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchive;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceTotals;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps invoice count and amount sum per user in the {@code invoice_totals} table, so dashboards never
+ * have to run a {@code GROUP BY} over all invoices.
+ */
+@Component
+public class InvoiceTotalsService {
+
+    private static final String MERGE_TOTALS = "merge into invoice_totals t using "
+            + "(select cast(? as varchar(255)) user_id, cast(? as bigint) invoice_count, cast(? as bigint) amount_sum) n "
+            + "on t.user_id = n.user_id "
+            + "when matched then update set invoice_count = t.invoice_count + n.invoice_count, amount_sum = t.amount_sum + n.amount_sum "
+            + "when not matched then insert (user_id, invoice_count, amount_sum) values (n.user_id, n.invoice_count, n.amount_sum)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InvoicePartitions invoicePartitions;
+    private final InvoiceArchive invoiceArchive;
+    private final TransactionTemplate transactionTemplate;
+    private final int rebuildChunkSize;
+    private final int rebuildThreads;
+
+    public InvoiceTotalsService(JdbcTemplate jdbcTemplate, InvoicePartitions invoicePartitions,
+                                InvoiceArchive invoiceArchive, PlatformTransactionManager transactionManager,
+                                @Value("${invoices.totals.rebuild-chunk-size:1000}") int rebuildChunkSize,
+                                @Value("${invoices.totals.rebuild-threads:0}") int rebuildThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.invoicePartitions = invoicePartitions;
+        this.invoiceArchive = invoiceArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildChunkSize = rebuildChunkSize;
+        this.rebuildThreads = rebuildThreads > 0 ? rebuildThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Adds the invoices to the totals of their users. Must run in the transaction that inserts them,
+     * so the totals commit or roll back together with the invoices.
+     */
+    @Timed("invoices.service")
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void add(List<Invoice> invoices) {
+        // one row per user, in a fixed order so two transactions never lock the same rows the other way round
+        Map<String, long[]> perUser = new TreeMap<>();
+        for (Invoice invoice : invoices) {
+            long[] totals = perUser.computeIfAbsent(invoice.getUserId(), userId -> new long[2]);
+            totals[0]++;
+            totals[1] += invoice.getAmount();
+        }
+        perUser.forEach((userId, totals) -> merge(userId, totals[0], totals[1]));
+    }
+
+    /**
+     * Takes invoices that are deleted in bulk out of the totals, given as their count and sum per user.
+     */
+    @Timed("invoices.service")
+    @Transactional
+    public void remove(List<InvoiceTotals> removed) {
+        List<InvoiceTotals> sorted = new ArrayList<>(removed);
+        sorted.sort(Comparator.comparing(InvoiceTotals::getUserId));
+        for (InvoiceTotals totals : sorted) {
+            merge(totals.getUserId(), -totals.getInvoiceCount(), -totals.getAmountSum());
+        }
+    }
+
+    /**
+     * Count and sum per user of the invoices in one table, see {@link InvoicePartitions}.
+     */
+    @Transactional(readOnly = true)
+    public List<InvoiceTotals> sumPerUser(String table) {
+        return jdbcTemplate.query("select user_id, count(*) invoice_count, coalesce(sum(amount), 0) amount_sum from "
+                        + table + " where user_id is not null group by user_id",
+                (resultSet, rowNum) -> toInvoiceTotals(resultSet));
+    }
+
+    private void merge(String userId, long invoiceCount, long amountSum) {
+        try {
+            jdbcTemplate.update(MERGE_TOTALS, userId, invoiceCount, amountSum);
+        } catch (DuplicateKeyException e) {
+            // another transaction inserted the user's first row at the same time, now it is there to update
+            jdbcTemplate.update(MERGE_TOTALS, userId, invoiceCount, amountSum);
+        }
+    }
+
+    @Timed("invoices.service")
+    @Transactional(readOnly = true)
+    public List<InvoiceTotals> findAll() {
+        return jdbcTemplate.query("select user_id,invoice_count,amount_sum from invoice_totals order by user_id",
+                (resultSet, rowNum) -> toInvoiceTotals(resultSet));
+    }
+
+    @Timed("invoices.service")
+    @Transactional(readOnly = true)
+    public List<InvoiceTotals> findByUserId(String userId) {
+        return jdbcTemplate.query("select user_id,invoice_count,amount_sum from invoice_totals where user_id = ?",
+                (resultSet, rowNum) -> toInvoiceTotals(resultSet), userId);
+    }
+
+    /**
+     * Recomputes the totals from the invoices table and replaces the stored ones. The users are split
+     * into chunks of {@code invoices.totals.rebuild-chunk-size} that are aggregated in parallel, each
+     * one a range scan on the {@code (user_id, id)} index. Invoices created while the rebuild runs can
+     * be missed, so run it when writes are quiet, e.g. after a bulk load. Archived invoices still count, they are
+     * added by reading through the whole archive. Returns the number of users.
+     */
+    @Timed("invoices.service")
+    public int rebuild() {
+        String invoices = allInvoices();
+        List<String> userIds = jdbcTemplate.queryForList(
+                "select distinct user_id from " + invoices + " where user_id is not null order by user_id", String.class);
+
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads,
+                new CustomizableThreadFactory("invoice-totals-rebuild-"));
+        List<InvoiceTotals> rebuilt = new ArrayList<>(userIds.size());
+        try {
+            List<Future<List<InvoiceTotals>>> chunks = new ArrayList<>();
+            for (int from = 0; from < userIds.size(); from += rebuildChunkSize) {
+                String first = userIds.get(from);
+                String last = userIds.get(Math.min(from + rebuildChunkSize, userIds.size()) - 1);
+                chunks.add(executor.submit(() -> jdbcTemplate.query(
+                        "select user_id, count(*) invoice_count, coalesce(sum(amount), 0) amount_sum from " + invoices + " "
+                                + "where user_id between ? and ? group by user_id",
+                        (resultSet, rowNum) -> toInvoiceTotals(resultSet), first, last)));
+            }
+            for (Future<List<InvoiceTotals>> chunk : chunks) {
+                rebuilt.addAll(chunk.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rebuilding the invoice totals was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rebuilding the invoice totals failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        List<InvoiceTotals> withArchived = invoiceArchive.isEnabled() ? addArchived(rebuilt) : rebuilt;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("delete from invoice_totals");
+            jdbcTemplate.batchUpdate("insert into invoice_totals (user_id,invoice_count,amount_sum) values(?,?,?)",
+                    withArchived, rebuildChunkSize, (ps, totals) -> {
+                        ps.setString(1, totals.getUserId());
+                        ps.setLong(2, totals.getInvoiceCount());
+                        ps.setLong(3, totals.getAmountSum());
+                    });
+        });
+        return withArchived.size();
+    }
+
+    private List<InvoiceTotals> addArchived(List<InvoiceTotals> totals) {
+        Map<String, long[]> perUser = new TreeMap<>();
+        for (InvoiceTotals userTotals : totals) {
+            perUser.put(userTotals.getUserId(), new long[]{userTotals.getInvoiceCount(), userTotals.getAmountSum()});
+        }
+        invoiceArchive.forEach(invoice -> {
+            if (invoice.getUserId() != null) {
+                long[] userTotals = perUser.computeIfAbsent(invoice.getUserId(), userId -> new long[2]);
+                userTotals[0]++;
+                userTotals[1] += invoice.getAmount() != null ? invoice.getAmount() : 0;
+            }
+        });
+        List<InvoiceTotals> withArchived = new ArrayList<>(perUser.size());
+        perUser.forEach((userId, userTotals) -> withArchived.add(new InvoiceTotals(userId, userTotals[0], userTotals[1])));
+        return withArchived;
+    }
+
+    // the invoices table, or with partitioning all tables together
+    private String allInvoices() {
+        List<String> tables = invoicePartitions.tables();
+        if (tables.size() == 1) {
+            return tables.get(0);
+        }
+        StringJoiner union = new StringJoiner(" union all ", "(", ") invoices");
+        for (String table : tables) {
+            union.add("select user_id, amount from " + table);
+        }
+        return union.toString();
+    }
+
+    private static InvoiceTotals toInvoiceTotals(ResultSet resultSet) throws SQLException {
+        return new InvoiceTotals(resultSet.getString("user_id"),
+                resultSet.getLong("invoice_count"), resultSet.getLong("amount_sum"));
+    }
+}
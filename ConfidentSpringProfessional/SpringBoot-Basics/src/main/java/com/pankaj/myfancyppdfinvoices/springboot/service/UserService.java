@@ -2,12 +2,14 @@ package com.pankaj.myfancyppdfinvoices.springboot.service;
 
 
 import com.pankaj.myfancyppdfinvoices.springboot.model.User;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Component;
 
 import java.util.UUID;
 
 @Component
 public class UserService {
+    @Timed("invoices.service")
     public User findById(String id){
         String randomName = UUID.randomUUID().toString();
         //always "finds" the user, every user has a random name
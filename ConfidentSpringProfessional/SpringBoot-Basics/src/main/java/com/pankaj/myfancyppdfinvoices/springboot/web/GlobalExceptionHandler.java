@@ -0,0 +1,31 @@
+package com.pankaj.myfancyppdfinvoices.springboot.web;
+
+import com.pankaj.myfancyppdfinvoices.springboot.service.CsvFormatException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import javax.validation.ConstraintViolationException;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestControllerAdvice
+public class GlobalExceptionHandler {
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(ConstraintViolationException.class)
+    public String handleConstraintViolation(ConstraintViolationException exception){
+        return "Sorry, that was not quite right: " + exception.getMessage();
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(CsvFormatException.class)
+    public String handleCsvFormat(CsvFormatException exception){
+        return "Sorry, that was not quite right: " + exception.getMessage();
+    }
+
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(RejectedExecutionException.class)
+    public String handleRejectedExecution(RejectedExecutionException exception){
+        return "Sorry, we are too busy right now, please try again later: " + exception.getMessage();
+    }
+}
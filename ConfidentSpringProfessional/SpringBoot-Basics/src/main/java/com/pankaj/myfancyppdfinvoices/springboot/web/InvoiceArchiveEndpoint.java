@@ -0,0 +1,48 @@
+package com.pankaj.myfancyppdfinvoices.springboot.web;
+
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchive;
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchiver;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/invoicearchive} describes the archive, {@code POST /actuator/invoicearchive} archives the
+ * invoices that are old enough right away instead of waiting for the next scheduled run.
+ */
+@Component
+@Endpoint(id = "invoicearchive")
+public class InvoiceArchiveEndpoint {
+
+    private final InvoiceArchive invoiceArchive;
+    private final InvoiceArchiver invoiceArchiver;
+
+    public InvoiceArchiveEndpoint(InvoiceArchive invoiceArchive, InvoiceArchiver invoiceArchiver) {
+        this.invoiceArchive = invoiceArchive;
+        this.invoiceArchiver = invoiceArchiver;
+    }
+
+    @ReadOperation
+    public Map<String, Object> archive() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", invoiceArchive.isEnabled());
+        result.put("segments", invoiceArchive.getSegmentCount());
+        result.put("invoices", invoiceArchive.getInvoiceCount());
+        result.put("bytes", invoiceArchive.getSize());
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> archiveNow() {
+        long start = System.nanoTime();
+        long archived = invoiceArchiver.archive();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("archived", archived);
+        result.put("millis", (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+}
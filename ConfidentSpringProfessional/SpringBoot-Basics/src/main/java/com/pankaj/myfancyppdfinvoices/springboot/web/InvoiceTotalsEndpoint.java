@@ -0,0 +1,33 @@
+package com.pankaj.myfancyppdfinvoices.springboot.web;
+
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceTotalsService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code POST /actuator/invoicetotals} recomputes the per-user invoice totals from scratch.
+ */
+@Component
+@Endpoint(id = "invoicetotals")
+public class InvoiceTotalsEndpoint {
+
+    private final InvoiceTotalsService invoiceTotalsService;
+
+    public InvoiceTotalsEndpoint(InvoiceTotalsService invoiceTotalsService) {
+        this.invoiceTotalsService = invoiceTotalsService;
+    }
+
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        long start = System.nanoTime();
+        int users = invoiceTotalsService.rebuild();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", users);
+        result.put("millis", (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+}
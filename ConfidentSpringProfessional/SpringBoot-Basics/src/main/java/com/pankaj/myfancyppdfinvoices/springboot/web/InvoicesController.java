@@ -1,28 +1,229 @@
 package com.pankaj.myfancyppdfinvoices.springboot.web;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pankaj.myfancyppdfinvoices.springboot.dto.InvoiceDto;
 import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceTotals;
+import com.pankaj.myfancyppdfinvoices.springboot.pdf.PdfRenderingPipeline;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceExportService;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceGroupCommit;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceImportService;
 import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceService;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceTotalsService;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicesVersion;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
+@Validated
 public class InvoicesController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final InvoiceService invoiceService;
+    private final InvoiceImportService invoiceImportService;
+    private final InvoiceExportService invoiceExportService;
+    private final InvoiceGroupCommit invoiceGroupCommit;
+    private final InvoiceTotalsService invoiceTotalsService;
+    private final InvoicesVersion invoicesVersion;
+    private final PdfRenderingPipeline pdfRenderingPipeline;
+    private final ObjectMapper objectMapper;
 
-    public InvoicesController(InvoiceService invoiceService) {
+    public InvoicesController(InvoiceService invoiceService, InvoiceImportService invoiceImportService,
+                              InvoiceExportService invoiceExportService, InvoiceGroupCommit invoiceGroupCommit,
+                              InvoiceTotalsService invoiceTotalsService, InvoicesVersion invoicesVersion,
+                              PdfRenderingPipeline pdfRenderingPipeline, ObjectMapper objectMapper) {
         this.invoiceService = invoiceService;
+        this.invoiceImportService = invoiceImportService;
+        this.invoiceExportService = invoiceExportService;
+        this.invoiceGroupCommit = invoiceGroupCommit;
+        this.invoiceTotalsService = invoiceTotalsService;
+        this.invoicesVersion = invoicesVersion;
+        this.pdfRenderingPipeline = pdfRenderingPipeline;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Without parameters this returns every invoice. With {@code after} and/or {@code limit} it returns
+     * one keyset page: pass the id of the last invoice of a page as {@code after} to get the next one.
+     * With {@code user_id} only the invoices of that user are returned, always paged. Otherwise, with {@code from}
+     * and/or {@code to} (ISO instants, {@code to} defaults to now) only the invoices created in that range, paged.
+     * <p>
+     * Responses carry the version of the invoices table as ETag. A request whose If-None-Match still
+     * matches gets a 304 without touching the database.
+     */
     @GetMapping("/invoices")
-    public List<Invoice> invoices(){
-        return invoiceService.findAll();
+    public List<Invoice> invoices(@RequestParam(name = "user_id", required = false) String userId,
+                                  @RequestParam(required = false) UUID after,
+                                  @RequestParam(required = false) @Min(1) @Max(1000) Integer limit,
+                                  @RequestParam(required = false) Instant from,
+                                  @RequestParam(required = false) Instant to,
+                                  WebRequest request){
+        // weak: the bytes differ per encoding, and Tomcat does not gzip responses with a strong ETag
+        if (request.checkNotModified("W/\"" + invoicesVersion.current() + "\"")) {
+            return null;
+        }
+        if (userId != null) {
+            return invoiceService.findByUserId(userId, after, limit != null ? limit : DEFAULT_PAGE_SIZE);
+        }
+        if (from != null || to != null) {
+            return invoiceService.findCreatedBetween(from != null ? from : Instant.EPOCH, to,
+                    after, limit != null ? limit : DEFAULT_PAGE_SIZE);
+        }
+        if (after == null && limit == null) {
+            return invoiceService.findAll();
+        }
+        return invoiceService.findPage(after, limit != null ? limit : DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * One invoice, also when it has been moved to the archive.
+     */
+    @GetMapping("/invoices/{id}")
+    public ResponseEntity<Invoice> invoice(@PathVariable UUID id){
+        Invoice invoice = invoiceService.findById(id);
+        return invoice != null ? ResponseEntity.ok(invoice) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * The rendered PDF of an invoice, this is what its pdf_url points to. 404 while it is still being rendered.
+     */
+    @GetMapping("/invoices/{id}/pdf")
+    public ResponseEntity<Resource> invoicePdf(@PathVariable UUID id){
+        Path pdf = pdfRenderingPipeline.pdfFile(id);
+        if (!Files.isRegularFile(pdf)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_PDF).body(new FileSystemResource(pdf));
+    }
+
+    /**
+     * Writes all invoices as one JSON array, row by row, while they are read from the database.
+     */
+    @GetMapping(value = "/invoices/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamInvoices(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            invoiceService.streamAll(invoice -> {
+                try {
+                    generator.writeObject(invoice);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
     }
 
+    /**
+     * Every invoice as CSV or NDJSON, streamed from the database. Clients sending Accept-Encoding: gzip get it
+     * compressed on the wire like any other response; {@code gzip=true} instead downloads an
+     * {@code invoices.csv.gz} or {@code invoices.ndjson.gz} file.
+     */
+    @GetMapping("/invoices/export")
+    public void exportInvoices(@RequestParam(defaultValue = "csv") String format,
+                               @RequestParam(defaultValue = "false") boolean gzip,
+                               HttpServletResponse response) throws IOException {
+        InvoiceExportService.Format exportFormat;
+        try {
+            exportFormat = InvoiceExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "format must be csv or ndjson");
+            return;
+        }
+        String fileName = "invoices." + exportFormat.getFileExtension();
+        if (!gzip) {
+            response.setContentType(exportFormat.getContentType() + ";charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+            invoiceExportService.export(exportFormat, response.getOutputStream());
+            return;
+        }
+        response.setContentType("application/gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + ".gz\"");
+        try (GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), 64 * 1024)) {
+            invoiceExportService.export(exportFormat, out);
+        }
+    }
+
+    /**
+     * Invoice count and amount sum per user, read from the incrementally maintained totals.
+     */
+    @GetMapping("/invoices/summary")
+    public List<InvoiceTotals> summary(@RequestParam(name = "user_id", required = false) String userId){
+        return userId != null ? invoiceTotalsService.findByUserId(userId) : invoiceTotalsService.findAll();
+    }
+
+    /**
+     * With group commit enabled the request is answered once the batch the invoice went into has committed,
+     * without holding a request thread in the meantime.
+     */
     @PostMapping("/invoices")
-    public Invoice createInvoice(@Valid @RequestBody InvoiceDto invoiceDto){
-        return invoiceService.create(invoiceDto.getUserId(),invoiceDto.getAmount());
+    public CompletableFuture<Invoice> createInvoice(@Valid @RequestBody InvoiceDto invoiceDto){
+        if (invoiceGroupCommit.isEnabled()) {
+            return invoiceGroupCommit.create(invoiceDto.getUserId(), invoiceDto.getAmount());
+        }
+        return CompletableFuture.completedFuture(invoiceService.create(invoiceDto.getUserId(),invoiceDto.getAmount()));
+    }
+
+    /**
+     * Creates all invoices of the JSON array in one go and returns their ids, in the same order.
+     */
+    @PostMapping("/invoices/batch")
+    public List<String> createInvoices(@RequestBody @NotEmpty List<@Valid InvoiceDto> invoiceDtos){
+        return invoiceService.createAll(invoiceDtos);
+    }
+
+    /**
+     * Imports the CSV request body (header {@code user_id,amount}) while it is uploaded, e.g.
+     * {@code curl -H 'Content-Type: text/csv' --data-binary @invoices.csv localhost:8080/invoices/import}.
+     * The response is one JSON progress report per line, one per committed chunk and a last one with
+     * {@code "done":true} and the rejected rows. An import that fails after the first line ends with that last
+     * line too, naming the {@code error}, as the status code has been sent by then.
+     */
+    @PostMapping(value = "/invoices/import", consumes = "text/csv", produces = "application/x-ndjson")
+    public void importInvoices(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Charset charset = request.getCharacterEncoding() != null
+                ? Charset.forName(request.getCharacterEncoding()) : StandardCharsets.UTF_8;
+        Reader csv = new InputStreamReader(request.getInputStream(), charset);
+        response.setContentType("application/x-ndjson");
+        OutputStream out = response.getOutputStream();
+        invoiceImportService.importCsv(csv, progress -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(progress));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 }
@@ -0,0 +1,3 @@
+BT /F1 18 Tf 50 780 Td (Invoice {{id}}) Tj ET
+BT /F1 12 Tf 50 740 Td (User: {{user_id}}) Tj ET
+BT /F1 12 Tf 50 720 Td (Amount: {{amount}}) Tj ET
@@ -3,5 +3,15 @@ create table if not exists invoices
     id      uuid  default random_uuid() primary key,
     pdf_url varchar(255),
     user_id varchar(255),
-    amount  int
+    amount  int,
+    status  varchar(16) default 'READY'
+);
+
+create index if not exists invoices_user_id_idx on invoices (user_id, id);
+
+create table if not exists invoice_totals
+(
+    user_id       varchar(255) primary key,
+    invoice_count bigint not null,
+    amount_sum    bigint not null
 );
@@ -0,0 +1,130 @@
+package com.pankaj.myfancyppdfinvoices.springboot;
+
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicesVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingConfigurationTests {
+
+    private AnnotationConfigApplicationContext context;
+    private Reader reader;
+    private Table table;
+    private InvoicesVersion invoicesVersion;
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        reader = context.getBean(Reader.class);
+        table = context.getBean(Table.class);
+        invoicesVersion = context.getBean(InvoicesVersion.class);
+        cacheManager = context.getBean(CacheManager.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void aReadFromBeforeAWriteIsNotServedAfterIt() throws Exception {
+        table.block = true;
+        CompletableFuture<String> slowRead = CompletableFuture.supplyAsync(reader::rows);
+        assertThat(table.read.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // the write commits while the slow read still holds the old rows
+        table.rows = "new";
+        invoicesVersion.bump();
+        cacheManager.getCache("invoices").clear();
+        table.release.countDown();
+        assertThat(slowRead.get(5, TimeUnit.SECONDS)).isEqualTo("old");
+
+        table.block = false;
+        assertThat(reader.rows()).isEqualTo("new");
+    }
+
+    @Test
+    void cachesPerVersion() {
+        assertThat(reader.rows()).isEqualTo("old");
+        table.rows = "new";
+        assertThat(reader.rows()).isEqualTo("old");
+
+        invoicesVersion.bump();
+        assertThat(reader.rows()).isEqualTo("new");
+    }
+
+    @Configuration
+    @EnableCaching
+    static class Config {
+        @Bean
+        InvoicesVersion invoicesVersion() {
+            return new InvoicesVersion();
+        }
+
+        @Bean
+        CacheManager cacheManager() {
+            return new CaffeineCacheManager("invoices");
+        }
+
+        @Bean(CachingConfiguration.INVOICES_KEY_GENERATOR)
+        KeyGenerator invoicesKeyGenerator(InvoicesVersion invoicesVersion) {
+            return new CachingConfiguration().invoicesKeyGenerator(invoicesVersion);
+        }
+
+        @Bean
+        Table table() {
+            return new Table();
+        }
+
+        @Bean
+        Reader reader(Table table) {
+            return new Reader(table);
+        }
+    }
+
+    static class Table {
+        final CountDownLatch read = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile String rows = "old";
+        volatile boolean block;
+    }
+
+    @CacheConfig(keyGenerator = CachingConfiguration.INVOICES_KEY_GENERATOR)
+    static class Reader {
+        private final Table table;
+
+        Reader(Table table) {
+            this.table = table;
+        }
+
+        @Cacheable("invoices")
+        public String rows() {
+            String result = table.rows;
+            if (table.block) {
+                table.read.countDown();
+                try {
+                    table.release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.pankaj.myfancyppdfinvoices.springboot.archive;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InvoiceArchiveTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsEveryInvoiceThroughTheSparseIndex() throws Exception {
+        InvoiceArchive archive = archive();
+        List<Invoice> invoices = invoices(1000);
+        SegmentWriter writer = archive.newSegment();
+        for (Invoice invoice : invoices) {
+            writer.add(invoice);
+        }
+        archive.publish(writer);
+
+        for (Invoice invoice : invoices) {
+            assertSame(archive.find(UUID.fromString(invoice.getId())), invoice);
+        }
+        // before the first, between two and after the last id
+        assertThat(archive.find(new UUID(0, 0))).isNull();
+        UUID first = UUID.fromString(invoices.get(0).getId());
+        assertThat(archive.find(new UUID(first.getMostSignificantBits(), first.getLeastSignificantBits() + 1))).isNull();
+        assertThat(archive.find(InvoiceIds.next())).isNull();
+        assertThat(archive.getInvoiceCount()).isEqualTo(1000);
+        // 1000 invoices of ~100 bytes in blocks of 64 compress well
+        assertThat(archive.getSize()).isLessThan(1000 * 50);
+    }
+
+    @Test
+    void reopensItsSegmentsAndCleansUpUnfinishedOnes() throws Exception {
+        InvoiceArchive archive = archive();
+        List<Invoice> invoices = invoices(200);
+        for (int from = 0; from < invoices.size(); from += 100) {
+            SegmentWriter writer = archive.newSegment();
+            for (Invoice invoice : invoices.subList(from, from + 100)) {
+                writer.add(invoice);
+            }
+            archive.publish(writer);
+        }
+        SegmentWriter unfinished = archive.newSegment();
+        unfinished.add(invoices(1).get(0));
+        unfinished.close();
+
+        InvoiceArchive reopened = archive();
+        assertThat(reopened.getSegmentCount()).isEqualTo(2);
+        assertSame(reopened.find(UUID.fromString(invoices.get(150).getId())), invoices.get(150));
+        List<Invoice> all = new ArrayList<>();
+        reopened.forEach(all::add);
+        assertThat(all).extracting(Invoice::getId)
+                .containsExactlyElementsOf(invoices.stream().map(Invoice::getId).collect(Collectors.toList()));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).noneMatch(file -> file.toString().endsWith(".tmp"));
+        }
+        // new segments don't take the name of an existing one
+        SegmentWriter next = reopened.newSegment();
+        assertThat(next.getFile().getFileName().toString()).isEqualTo("segment-00000002.seg.tmp");
+        next.discard();
+    }
+
+    @Test
+    void onlyTakesInvoicesInIdOrder() throws Exception {
+        List<Invoice> invoices = invoices(2);
+        SegmentWriter writer = archive().newSegment();
+        writer.add(invoices.get(1));
+
+        assertThatThrownBy(() -> writer.add(invoices.get(0))).isInstanceOf(IllegalArgumentException.class);
+        writer.discard();
+    }
+
+    private InvoiceArchive archive() throws Exception {
+        InvoiceArchiveProperties properties = new InvoiceArchiveProperties();
+        properties.setEnabled(true);
+        properties.setDir(dir.toString());
+        properties.setBlockSize(64);
+        InvoiceArchive archive = new InvoiceArchive(properties);
+        archive.loadSegments();
+        return archive;
+    }
+
+    private static List<Invoice> invoices(int count) {
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Invoice invoice = new Invoice("user" + i % 10, i % 3 == 0 ? null : 10 + i, "https://cdn.pankaj.com/invoices/" + i + ".pdf");
+            invoice.setStatus(i % 2 == 0 ? InvoiceStatus.READY : InvoiceStatus.FAILED);
+            invoices.add(invoice);
+        }
+        return invoices;
+    }
+
+    private static void assertSame(Invoice actual, Invoice expected) {
+        assertThat(actual).usingRecursiveComparison().isEqualTo(expected);
+    }
+}
@@ -0,0 +1,118 @@
+package com.pankaj.myfancyppdfinvoices.springboot.archive;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceTotals;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicePartitions;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceService;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoiceTotalsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:archiver-tests;DB_CLOSE_DELAY=-1",
+        "invoices.partitioning.enabled=true",
+        "invoices.archive.enabled=true",
+        "invoices.archive.interval=0",
+        "invoices.archive.dir=${java.io.tmpdir}/invoice-archiver-tests-${random.uuid}",
+        "pdf.rendering.output-dir=${java.io.tmpdir}/invoice-archiver-tests-pdf"
+})
+@DirtiesContext
+class InvoiceArchiverTests {
+
+    private static final YearMonth OLD = YearMonth.now(ZoneOffset.UTC).minusMonths(4);
+
+    @Autowired
+    private InvoiceArchiver invoiceArchiver;
+
+    @Autowired
+    private InvoiceArchive invoiceArchive;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceTotalsService invoiceTotalsService;
+
+    @Autowired
+    private InvoicePartitions invoicePartitions;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void movesOldInvoicesToTheArchiveAndStillFindsThem() {
+        Instant created = OLD.atDay(2).atStartOfDay(ZoneOffset.UTC).toInstant();
+        List<UUID> inMonth = new ArrayList<>();
+        List<UUID> beforePartitioning = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            UUID id = idAt(created.plus(i, ChronoUnit.MINUTES));
+            inMonth.add(id);
+            insert(invoicePartitions.tableFor(id), id, InvoiceStatus.READY);
+        }
+        for (int i = 0; i < 20; i++) {
+            UUID id = idAt(created.plus(i, ChronoUnit.SECONDS));
+            beforePartitioning.add(id);
+            insert(InvoicePartitions.UNPARTITIONED_TABLE, id, InvoiceStatus.READY);
+        }
+        UUID pending = idAt(created.plus(1, ChronoUnit.DAYS));
+        insert(InvoicePartitions.UNPARTITIONED_TABLE, pending, InvoiceStatus.PENDING);
+        UUID random = UUID.randomUUID();
+        insert(InvoicePartitions.UNPARTITIONED_TABLE, random, InvoiceStatus.READY);
+        Invoice recent = invoiceService.create("recent", 10);
+        invoiceTotalsService.rebuild();
+
+        long archived = invoiceArchiver.archiveOlderThan(OLD.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        assertThat(archived).isEqualTo(520);
+        assertThat(invoicePartitions.table(OLD)).isNull();
+        assertThat(jdbcTemplate.queryForList("select id from invoices", UUID.class))
+                .containsExactlyInAnyOrder(pending, random);
+        assertThat(invoiceArchive.getInvoiceCount()).isEqualTo(520);
+
+        Invoice fromArchive = invoiceService.findById(inMonth.get(7));
+        assertThat(fromArchive.getUserId()).isEqualTo("old");
+        assertThat(fromArchive.getAmount()).isEqualTo(20);
+        assertThat(fromArchive.getStatus()).isEqualTo(InvoiceStatus.READY);
+        assertThat(invoiceService.findById(beforePartitioning.get(3))).isNotNull();
+        assertThat(invoiceService.findById(pending)).isNotNull();
+        assertThat(invoiceService.findById(UUID.fromString(recent.getId()))).isNotNull();
+        assertThat(invoiceService.findById(UUID.randomUUID())).isNull();
+        // the month must not come back from a lookup
+        assertThat(invoicePartitions.table(OLD)).isNull();
+
+        // archived invoices still count towards the totals, also after a rebuild
+        assertThat(invoiceTotalsService.findByUserId("old")).extracting(InvoiceTotals::getInvoiceCount).containsExactly(522L);
+        invoiceTotalsService.rebuild();
+        assertThat(invoiceTotalsService.findByUserId("old")).extracting(InvoiceTotals::getInvoiceCount).containsExactly(522L);
+
+        // nothing left that is old enough
+        assertThat(invoiceArchiver.archiveOlderThan(OLD.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant())).isZero();
+    }
+
+    private void insert(String table, UUID id, InvoiceStatus status) {
+        jdbcTemplate.update("insert into " + table + " (id,user_id,amount,status) values(?,?,?,?)",
+                id, "old", 20, status.name());
+    }
+
+    private static UUID idAt(Instant instant) {
+        UUID lowest = InvoiceIds.lowerBound(instant);
+        return new UUID(lowest.getMostSignificantBits(),
+                lowest.getLeastSignificantBits() | ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL);
+    }
+}
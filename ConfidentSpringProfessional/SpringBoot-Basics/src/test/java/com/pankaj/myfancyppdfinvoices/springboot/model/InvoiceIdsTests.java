@@ -0,0 +1,83 @@
+package com.pankaj.myfancyppdfinvoices.springboot.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvoiceIdsTests {
+
+    @Test
+    void isAVersion7Uuid() {
+        UUID id = InvoiceIds.next();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void startsWithTheCurrentTime() {
+        long before = System.currentTimeMillis();
+        UUID id = InvoiceIds.next();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.getMostSignificantBits() >>> 16).isBetween(before, after + 1);
+    }
+
+    @Test
+    void knowsWhenItWasMade() {
+        Instant before = Instant.ofEpochMilli(System.currentTimeMillis());
+        UUID id = InvoiceIds.next();
+
+        assertThat(InvoiceIds.isTimeOrdered(id)).isTrue();
+        assertThat(InvoiceIds.isTimeOrdered(UUID.randomUUID())).isFalse();
+        assertThat(InvoiceIds.createdAt(id)).isBetween(before, before.plusSeconds(1));
+        assertThat(InvoiceIds.lowerBound(before)).isLessThanOrEqualTo(id);
+        assertThat(InvoiceIds.lowerBound(before.plusSeconds(1))).isGreaterThan(id);
+    }
+
+    @Test
+    void increasesStrictlyEvenWithinOneMillisecond() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(InvoiceIds.next());
+        }
+
+        List<UUID> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertThat(ids).isEqualTo(sorted).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void isUniqueAcrossThreads() throws Exception {
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        ids.add(InvoiceIds.next());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(ids).hasSize(8 * 50_000);
+    }
+}
@@ -0,0 +1,123 @@
+package com.pankaj.myfancyppdfinvoices.springboot.pdf;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicePartitions;
+import com.pankaj.myfancyppdfinvoices.springboot.service.InvoicesVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PdfRenderingPipelineTests {
+
+    @TempDir
+    Path outputDir;
+
+    private final CountDownLatch rendering = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PdfRenderingPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        PdfRenderingProperties properties = new PdfRenderingProperties();
+        properties.setWorkers(1);
+        properties.setQueueCapacity(1);
+        properties.setSubmitTimeoutMs(50);
+        properties.setOutputDir(outputDir.toString());
+        PdfRenderer blockingRenderer = new PdfRenderer(null) {
+            @Override
+            public byte[] render(Invoice invoice) {
+                rendering.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "%PDF-1.4".getBytes();
+            }
+        };
+        pipeline = new PdfRenderingPipeline(blockingRenderer, jdbcTemplate, new NoOpCacheManager(), new InvoicesVersion(),
+                new InvoicePartitions(jdbcTemplate, null, false), properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        pipeline.shutDown();
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        pipeline.submit(Collections.singletonList(invoice("1")));
+        assertThat(rendering.await(5, TimeUnit.SECONDS)).isTrue();
+        // the worker is busy, this one takes the only queue slot
+        pipeline.submit(Collections.singletonList(invoice("2")));
+
+        assertThatThrownBy(() -> pipeline.submit(Collections.singletonList(invoice("3"))))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(meterRegistry.get("pdf.rendering.queue.depth").gauge().value()).isEqualTo(1.0);
+
+        release.countDown();
+        verify(jdbcTemplate, timeout(5000).times(2)).batchUpdate(anyString(), anyList());
+        assertThat(outputDir.resolve(invoice("2").getId() + ".pdf")).exists();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void storesTheUrlTheWrittenFileIsServedFrom() throws Exception {
+        release.countDown();
+        Invoice invoice = invoice("1");
+        pipeline.submit(Collections.singletonList(invoice));
+
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, timeout(5000)).batchUpdate(anyString(), updates.capture());
+        assertThat(updates.getValue().get(0)[0]).isEqualTo("/invoices/" + invoice.getId() + "/pdf");
+        assertThat(pipeline.pdfFile(UUID.fromString(invoice.getId()))).hasContent("%PDF-1.4");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void marksJobsFailedThatArriveAfterShutDown() throws Exception {
+        pipeline.shutDown();
+
+        pipeline.submit(Collections.singletonList(invoice("1")));
+        // the slot was given back, or this would time out
+        pipeline.submit(Collections.singletonList(invoice("2")));
+
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), updates.capture());
+        assertThat(updates.getAllValues()).allSatisfy(update -> assertThat(update.get(0)[1]).isEqualTo("FAILED"));
+        assertThat(meterRegistry.get("pdf.rendering.failures").counter().count()).isEqualTo(2.0);
+    }
+
+    private static Invoice invoice(String suffix) {
+        Invoice invoice = new Invoice();
+        invoice.setId("00000000-0000-0000-0000-00000000000" + suffix);
+        invoice.setUserId("someUserId");
+        invoice.setAmount(20);
+        return invoice;
+    }
+}
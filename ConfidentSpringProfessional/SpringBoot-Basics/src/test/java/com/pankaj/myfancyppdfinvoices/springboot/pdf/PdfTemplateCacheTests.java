@@ -0,0 +1,116 @@
+package com.pankaj.myfancyppdfinvoices.springboot.pdf;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PdfTemplateCacheTests {
+
+    @TempDir
+    Path sourceDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PdfTemplateCache cache;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        cache.shutDown();
+    }
+
+    @Test
+    void copiesTemplatesToTheHeapOnceTheyAreUsedOften() throws Exception {
+        Files.write(sourceDir.resolve("hot.tpl"), "hot".getBytes(StandardCharsets.ISO_8859_1));
+        Files.write(sourceDir.resolve("cold.tpl"), "cold".getBytes(StandardCharsets.ISO_8859_1));
+        cache = cache(DataSize.ofBytes(32), DataSize.ofBytes(16), Duration.ofMinutes(1));
+
+        assertThat(cache.get("hot.tpl").isDirect()).isTrue();
+        assertThat(cache.get("hot.tpl").isDirect()).isTrue();
+        ByteBuffer promoted = cache.get("hot.tpl");
+        assertThat(promoted.isDirect()).isFalse();
+        assertThat(content(promoted)).isEqualTo("hot");
+        assertThat(content(cache.get("cold.tpl"))).isEqualTo("cold");
+
+        assertThat(meterRegistry.get("pdf.templates.cache").tag("result", "miss").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("pdf.templates.cache").tag("result", "hit").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("pdf.templates.cache.heap.bytes").gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    void neverCopiesBigTemplatesToTheHeap() throws Exception {
+        Files.write(sourceDir.resolve("big.tpl"), new byte[64]);
+        cache = cache(DataSize.ofBytes(32), DataSize.ofBytes(16), Duration.ofMinutes(1));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(cache.get("big.tpl").isDirect()).isTrue();
+        }
+        assertThat(meterRegistry.get("pdf.templates.cache.heap.bytes").gauge().value()).isZero();
+    }
+
+    @Test
+    void movesLeastRecentlyUsedTemplatesBackToTheirFilesOverTheSizeLimit() throws Exception {
+        for (String name : new String[]{"a.tpl", "b.tpl", "c.tpl"}) {
+            Files.write(sourceDir.resolve(name), new byte[10]);
+        }
+        cache = cache(DataSize.ofBytes(20), DataSize.ofBytes(10), Duration.ofMinutes(1));
+
+        for (String name : new String[]{"a.tpl", "b.tpl", "a.tpl", "c.tpl"}) {
+            for (int i = 0; i < 3; i++) {
+                cache.get(name);
+            }
+        }
+
+        // b was the least recently used one, it is read from its file again, without a download
+        assertThat(cache.get("b.tpl").isDirect()).isTrue();
+        assertThat(cache.get("a.tpl").isDirect()).isFalse();
+        assertThat(meterRegistry.get("pdf.templates.cache").tag("result", "miss").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("pdf.templates.cache.evictions").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("pdf.templates.cache.heap.bytes").gauge().value()).isEqualTo(20);
+    }
+
+    @Test
+    void downloadsExpiredTemplatesAgain() throws Exception {
+        Files.write(sourceDir.resolve("a.tpl"), "v1".getBytes(StandardCharsets.ISO_8859_1));
+        cache = cache(DataSize.ofBytes(20), DataSize.ofBytes(10), Duration.ZERO);
+
+        assertThat(content(cache.get("a.tpl"))).isEqualTo("v1");
+        Files.write(sourceDir.resolve("a.tpl"), "v2".getBytes(StandardCharsets.ISO_8859_1));
+        assertThat(content(cache.get("a.tpl"))).isEqualTo("v2");
+
+        assertThat(meterRegistry.get("pdf.templates.cache").tag("result", "miss").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsNamesOutsideTheTemplateDirectory() throws Exception {
+        cache = cache(DataSize.ofBytes(20), DataSize.ofBytes(10), Duration.ofMinutes(1));
+
+        assertThatThrownBy(() -> cache.get("../secret")).isInstanceOf(FileNotFoundException.class);
+    }
+
+    private PdfTemplateCache cache(DataSize maxSize, DataSize maxEntrySize, Duration ttl) throws Exception {
+        PdfTemplateProperties properties = new PdfTemplateProperties();
+        properties.setSource(sourceDir.toUri().toString());
+        properties.setCacheMaxSize(maxSize);
+        properties.setCacheMaxEntrySize(maxEntrySize);
+        properties.setCachePromoteAfter(3);
+        properties.setCacheTtl(ttl);
+        PdfTemplateCache cache = new PdfTemplateCache(new ResourcePdfTemplateSource(properties), properties, meterRegistry);
+        cache.init();
+        return cache;
+    }
+
+    private static String content(ByteBuffer buffer) {
+        return StandardCharsets.ISO_8859_1.decode(buffer).toString();
+    }
+}
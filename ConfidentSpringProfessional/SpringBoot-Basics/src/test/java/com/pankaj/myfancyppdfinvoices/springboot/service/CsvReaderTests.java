@@ -0,0 +1,82 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvReaderTests {
+
+    @Test
+    void readsPlainAndQuotedFields() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(
+                "user_id,amount\r\nuser1,10\n\"user, \"\"two\"\"\",20\n\nuser3,\n"));
+
+        assertThat(reader.next()).containsExactly("user_id", "amount");
+        assertThat(reader.next()).containsExactly("user1", "10");
+        assertThat(reader.next()).containsExactly("user, \"two\"", "20");
+        assertThat(reader.recordLine()).isEqualTo(3);
+        assertThat(reader.next()).containsExactly("user3", "");
+        assertThat(reader.recordLine()).isEqualTo(5);
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void quotedFieldsMaySpanLines() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\"a\nb\",1\nc,2"));
+
+        assertThat(reader.next()).containsExactly("a\nb", "1");
+        assertThat(reader.next()).containsExactly("c", "2");
+        assertThat(reader.recordLine()).isEqualTo(3);
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void readsRecordsLongerThanTheBuffer() throws IOException {
+        char[] longField = new char[20_000];
+        Arrays.fill(longField, 'x');
+        CsvReader reader = new CsvReader(new StringReader(new String(longField) + ",1\n"));
+
+        assertThat(reader.next()).containsExactly(new String(longField), "1");
+    }
+
+    @Test
+    void rejectsAnUnclosedQuote() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("ok,1\n\"broken,2\n"));
+        reader.next();
+
+        assertThatThrownBy(reader::next).isInstanceOf(CsvFormatException.class).hasMessageContaining("Line 2");
+    }
+
+    @Test
+    void stopsReadingAtAnUnclosedQuoteInsteadOfBufferingTheRest() throws IOException {
+        int[] read = new int[1];
+        Reader rows = new StringReader("ok,1\n\"broken,2\n" + "user,3\n".repeat(100_000)) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                read[0] += Math.max(n, 0);
+                return n;
+            }
+        };
+        CsvReader reader = new CsvReader(rows, 1000);
+        reader.next();
+
+        assertThatThrownBy(reader::next).isInstanceOf(CsvFormatException.class)
+                .hasMessageContaining("Line 2").hasMessageContaining("longer than 1000 characters");
+        assertThat(read[0]).isLessThan(20_000);
+    }
+
+    @Test
+    void rejectsRecordsOverTheLimit() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("ok,1\n" + "x".repeat(101) + ",2\nok,3\n"), 100);
+        reader.next();
+
+        assertThatThrownBy(reader::next).isInstanceOf(CsvFormatException.class).hasMessageContaining("Line 2");
+    }
+}
@@ -0,0 +1,103 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchive;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InvoiceExportServiceTests {
+
+    private final InvoiceService invoiceService = mock(InvoiceService.class);
+    private final InvoiceArchive invoiceArchive = mock(InvoiceArchive.class);
+    private final InvoiceExportService exportService =
+            new InvoiceExportService(invoiceService, invoiceArchive, new ObjectMapper());
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            Consumer<Invoice> consumer = invocation.getArgument(0);
+            consumer.accept(invoice("00000000-0000-7000-8000-000000000001", "user1", 10, InvoiceStatus.READY,
+                    "https://cdn/1.pdf"));
+            consumer.accept(invoice("00000000-0000-7000-8000-000000000002", "smith, \"jr\"", 20,
+                    InvoiceStatus.PENDING, null));
+            return null;
+        }).when(invoiceService).streamAll(any());
+    }
+
+    @Test
+    void writesCsvWithAHeaderAndQuotesWhereNeeded() throws IOException {
+        String csv = export(InvoiceExportService.Format.CSV);
+
+        assertThat(csv).isEqualTo("id,user_id,amount,status,pdf_url\n"
+                + "00000000-0000-7000-8000-000000000001,user1,10,READY,https://cdn/1.pdf\n"
+                + "00000000-0000-7000-8000-000000000002,\"smith, \"\"jr\"\"\",20,PENDING,\n");
+    }
+
+    @Test
+    void csvExportCanBeReadBackByTheImport() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(export(InvoiceExportService.Format.CSV)));
+        reader.next();
+        reader.next();
+
+        assertThat(reader.next()).containsExactly("00000000-0000-7000-8000-000000000002", "smith, \"jr\"", "20",
+                "PENDING", "");
+    }
+
+    @Test
+    void writesOneJsonObjectPerLine() throws IOException {
+        String ndjson = export(InvoiceExportService.Format.NDJSON);
+
+        String[] lines = ndjson.split("\n");
+        assertThat(ndjson).endsWith("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"id\":\"00000000-0000-7000-8000-000000000001\"")
+                .contains("\"user_id\":\"user1\"");
+        assertThat(new ObjectMapper().readValue(lines[1], Invoice.class).getUserId()).isEqualTo("smith, \"jr\"");
+    }
+
+    @Test
+    void appendsTheArchivedInvoices() throws IOException {
+        when(invoiceArchive.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> {
+            Consumer<Invoice> consumer = invocation.getArgument(0);
+            consumer.accept(invoice("00000000-0000-7000-8000-000000000000", "archived", 30, InvoiceStatus.READY,
+                    null));
+            return null;
+        }).when(invoiceArchive).forEach(any());
+
+        String[] lines = export(InvoiceExportService.Format.CSV).split("\n");
+
+        assertThat(lines).hasSize(4);
+        assertThat(lines[3]).isEqualTo("00000000-0000-7000-8000-000000000000,archived,30,READY,");
+    }
+
+    private String export(InvoiceExportService.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Invoice invoice(String id, String userId, int amount, InvoiceStatus status, String pdfUrl) {
+        Invoice invoice = new Invoice();
+        invoice.setId(id);
+        invoice.setUserId(userId);
+        invoice.setAmount(amount);
+        invoice.setStatus(status);
+        invoice.setPdfUrl(pdfUrl);
+        return invoice;
+    }
+}
@@ -0,0 +1,133 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:group-commit-tests;DB_CLOSE_DELAY=-1",
+        "invoices.group-commit.enabled=true",
+        "invoices.group-commit.window-ms=20",
+        "invoices.group-commit.max-size=50",
+        "pdf.rendering.output-dir=${java.io.tmpdir}/invoice-group-commit-tests"
+})
+@DirtiesContext
+class InvoiceGroupCommitTests {
+
+    @Autowired
+    private InvoiceGroupCommit invoiceGroupCommit;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void commitsConcurrentCallsTogether() throws Exception {
+        DistributionSummary batchSizes = meterRegistry.get("invoices.group-commit.batch.size").summary();
+        long batchesBefore = batchSizes.count();
+
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        List<CompletableFuture<Invoice>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 400; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> invoiceGroupCommit.create("grouped", 25), callers)
+                        .thenCompose(future -> future));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        } finally {
+            callers.shutdown();
+        }
+
+        for (CompletableFuture<Invoice> future : futures) {
+            Invoice invoice = future.join();
+            assertThat(invoice.getUserId()).isEqualTo("grouped");
+            assertThat(invoice.getStatus()).isEqualTo(InvoiceStatus.PENDING);
+            Long stored = jdbcTemplate.queryForObject("select count(*) from invoices where id = ?", Long.class,
+                    UUID.fromString(invoice.getId()));
+            assertThat(stored).isEqualTo(1);
+        }
+        Long invoiceCount = jdbcTemplate.queryForObject(
+                "select invoice_count from invoice_totals where user_id = 'grouped'", Long.class);
+        assertThat(invoiceCount).isEqualTo(400);
+
+        // far fewer transactions than invoices, none bigger than max-size
+        long batches = batchSizes.count() - batchesBefore;
+        assertThat(batches).isLessThan(400);
+        assertThat(batchSizes.max()).isLessThanOrEqualTo(50);
+    }
+
+    @Test
+    void failsOnlyTheInvoiceTheDatabaseRefuses() throws Exception {
+        List<CompletableFuture<Invoice>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // too long for the user_id column
+            futures.add(invoiceGroupCommit.create(i == 4 ? "x".repeat(300) : "regrouped", 25));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .handle((result, e) -> null).get(30, TimeUnit.SECONDS);
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertThat(futures.get(i).isCompletedExceptionally()).isEqualTo(i == 4);
+        }
+        Long invoiceCount = jdbcTemplate.queryForObject(
+                "select invoice_count from invoice_totals where user_id = 'regrouped'", Long.class);
+        assertThat(invoiceCount).isEqualTo(9);
+    }
+
+    @Test
+    void rejectsInvoicesAfterShutDown() throws Exception {
+        InvoiceGroupCommit stopped = new InvoiceGroupCommit(null, new SimpleMeterRegistry(), true, 20, 50, 100);
+        stopped.start();
+        stopped.shutDown();
+
+        assertThatThrownBy(() -> stopped.create("late", 25)).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    void commitsQueuedInvoicesOnShutDown() throws Exception {
+        // a window far longer than the test, only the shutdown signal ends the batch early
+        InvoiceGroupCommit stopping = new InvoiceGroupCommit(invoiceService, new SimpleMeterRegistry(), true, 60_000,
+                50, 100);
+        stopping.start();
+        List<CompletableFuture<Invoice>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(stopping.create("drained", 25));
+        }
+
+        long started = System.nanoTime();
+        stopping.shutDown();
+
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started)).isLessThan(10);
+        for (CompletableFuture<Invoice> future : futures) {
+            assertThat(future).isCompleted();
+            assertThat(future.join().getUserId()).isEqualTo("drained");
+        }
+        Long invoiceCount = jdbcTemplate.queryForObject(
+                "select invoice_count from invoice_totals where user_id = 'drained'", Long.class);
+        assertThat(invoiceCount).isEqualTo(5);
+    }
+}
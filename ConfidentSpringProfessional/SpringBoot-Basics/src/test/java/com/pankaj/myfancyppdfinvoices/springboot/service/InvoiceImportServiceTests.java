@@ -0,0 +1,137 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceImportProgress;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:import-tests;DB_CLOSE_DELAY=-1",
+        "invoices.import.chunk-size=1000",
+        "pdf.rendering.output-dir=${java.io.tmpdir}/invoice-import-tests"
+})
+@DirtiesContext
+class InvoiceImportServiceTests {
+
+    @Autowired
+    private InvoiceImportService invoiceImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importsValidRowsInChunksAndReportsTheRest() throws Exception {
+        long before = count();
+        List<InvoiceImportProgress> reports = new ArrayList<>();
+
+        InvoiceImportProgress result = invoiceImportService.importCsv(
+                new GeneratedCsv(20_000, "importer"), reports::add);
+
+        // every 100th row is invalid: amount 5 is below @Min(10)
+        assertThat(result.getRows()).isEqualTo(20_000);
+        assertThat(result.getRejected()).isEqualTo(200);
+        assertThat(result.getImported()).isEqualTo(19_800);
+        assertThat(result.getErrors()).hasSize(100).first().asString()
+                .startsWith("Line 2: amount ");
+        assertThat(count() - before).isEqualTo(19_800);
+
+        // 19 full chunks of 1000, then the rest and the final report
+        assertThat(reports).hasSize(20);
+        assertThat(reports.get(0).getImported()).isEqualTo(1000);
+        assertThat(reports.get(19).isDone()).isTrue();
+
+        // the rejected rows all belong to importer0
+        Long invoiceCount = jdbcTemplate.queryForObject(
+                "select invoice_count from invoice_totals where user_id = 'importer0'", Long.class);
+        assertThat(invoiceCount).isEqualTo(2000 - 200);
+    }
+
+    @Test
+    void reportsRowsThatCannotBeRead() throws Exception {
+        InvoiceImportProgress result = invoiceImportService.importCsv(new StringReader(
+                "amount,user_id,comment\n20,reader1,ok\nabc,reader1\n30\n,reader2\n40,,\n"), progress -> { });
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).containsExactly(
+                "Line 3: amount 'abc' is not a number",
+                "Line 4: expected at least 2 fields, got 1",
+                "Line 5: amount must not be null",
+                "Line 6: userId must not be blank");
+    }
+
+    @Test
+    void endsWithAnErrorReportWhenAChunkFailsAfterProgressWasReported() throws Exception {
+        StringBuilder csv = new StringBuilder("user_id,amount\n");
+        for (int i = 0; i < 1000; i++) {
+            csv.append("failing,20\n");
+        }
+        // valid, but too long for the user_id column
+        csv.append("x".repeat(300)).append(",20\n").append("bad,5\n");
+        List<InvoiceImportProgress> reports = new ArrayList<>();
+
+        InvoiceImportProgress result = invoiceImportService.importCsv(new StringReader(csv.toString()), reports::add);
+
+        assertThat(reports).hasSize(2).last().isSameAs(result);
+        assertThat(result.isDone()).isTrue();
+        assertThat(result.getImported()).isEqualTo(1000);
+        assertThat(result.getRejected()).isEqualTo(1);
+        assertThat(result.getError()).isNotBlank();
+    }
+
+    @Test
+    void rejectsAHeaderWithoutTheRequiredColumns() {
+        assertThatThrownBy(() -> invoiceImportService.importCsv(new StringReader("user,amount\nu,20\n"), p -> { }))
+                .isInstanceOf(CsvFormatException.class);
+    }
+
+    private long count() {
+        return jdbcTemplate.queryForObject("select count(*) from invoices", Long.class);
+    }
+
+    /**
+     * {@code rows} rows for ten users, made up while they are read, so the test never holds the whole file.
+     */
+    private static class GeneratedCsv extends Reader {
+        private final int rows;
+        private final String userPrefix;
+        private int row = -1;
+        private String current = "";
+        private int offset;
+
+        GeneratedCsv(int rows, String userPrefix) {
+            this.rows = rows;
+            this.userPrefix = userPrefix;
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) {
+            if (offset == current.length()) {
+                if (row == rows) {
+                    return -1;
+                }
+                current = row < 0 ? "user_id,amount\n"
+                        : userPrefix + (row % 10) + "," + (row % 100 == 0 ? 5 : 10 + row % 41) + "\n";
+                row++;
+                offset = 0;
+            }
+            int n = Math.min(len, current.length() - offset);
+            current.getChars(offset, offset + n, buffer, off);
+            offset += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceTotals;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:partition-tests;DB_CLOSE_DELAY=-1",
+        "invoices.partitioning.enabled=true",
+        "pdf.rendering.output-dir=${java.io.tmpdir}/invoice-partition-tests"
+})
+@DirtiesContext
+class InvoicePartitionsTests {
+
+    private static final YearMonth NOW = YearMonth.now(ZoneOffset.UTC);
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceTotalsService invoiceTotalsService;
+
+    @Autowired
+    private InvoicePartitions invoicePartitions;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void routesInvoicesByMonthAndReadsOnlyTheMonthsInRange() throws Exception {
+        // from before partitioning, with random ids
+        jdbcTemplate.update("insert into invoices (user_id,amount,status) select 'legacy', 20, 'READY' from system_range(1, 5)");
+        for (int monthsAgo = 3; monthsAgo >= 1; monthsAgo--) {
+            insertInvoices(NOW.minusMonths(monthsAgo), 10);
+        }
+        invoiceTotalsService.rebuild();
+
+        Invoice created = invoiceService.create("fresh", 30);
+        assertThat(invoicePartitions.tableFor(UUID.fromString(created.getId())))
+                .isEqualTo("invoices_" + NOW.toString().replace('-', '_'));
+        assertThat(count("invoices")).isEqualTo(5);
+        assertThat(invoicePartitions.months()).contains(NOW.minusMonths(3), NOW, NOW.plusMonths(1));
+
+        // keyset pages over all tables come out in id order
+        List<UUID> paged = new ArrayList<>();
+        List<Invoice> page = invoiceService.findPage(null, 7);
+        while (!page.isEmpty()) {
+            page.forEach(invoice -> paged.add(UUID.fromString(invoice.getId())));
+            page = invoiceService.findPage(paged.get(paged.size() - 1), 7);
+        }
+        assertThat(paged).hasSize(5 + 30 + 1).isSorted().doesNotHaveDuplicates();
+        assertThat(invoiceService.findByUserId("old", null, 100)).hasSize(30);
+
+        Instant from = start(NOW.minusMonths(2));
+        Instant to = start(NOW.minusMonths(1));
+        assertThat(invoicePartitions.tablesBetween(from, to)).hasSize(1);
+        assertThat(invoiceService.findCreatedBetween(from, to, null, 100)).hasSize(10)
+                .allMatch(invoice -> !InvoiceIds.createdAt(UUID.fromString(invoice.getId())).isBefore(from)
+                        && InvoiceIds.createdAt(UUID.fromString(invoice.getId())).isBefore(to));
+
+        // up to now is not cached: a row written behind the cache's back shows up
+        int upToNow = invoiceService.findCreatedBetween(from, null, null, 100).size();
+        insertInvoices(NOW.minusMonths(1), 1);
+        assertThat(invoiceService.findCreatedBetween(from, null, null, 100)).hasSize(upToNow + 1);
+
+        // the PDF status update finds the invoice in its month
+        for (int i = 0; i < 50 && "PENDING".equals(status(created)); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(status(created)).isEqualTo("READY");
+    }
+
+    @Test
+    void dropsAMonthAsAWhole() {
+        YearMonth month = NOW.minusMonths(5);
+        insertInvoices(month, 10);
+        invoiceTotalsService.rebuild();
+        long before = oldInvoiceCount();
+
+        assertThat(invoiceService.dropMonth(month)).isTrue();
+
+        assertThat(invoicePartitions.months()).doesNotContain(month);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from information_schema.tables where table_name = ?",
+                Long.class, "INVOICES_" + month.toString().replace('-', '_'))).isZero();
+        assertThat(oldInvoiceCount()).isEqualTo(before - 10);
+        assertThat(invoiceService.dropMonth(month)).isFalse();
+        assertThatThrownBy(() -> invoiceService.dropMonth(NOW)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void insertInvoices(YearMonth month, int invoices) {
+        Instant start = start(month).plus(1, ChronoUnit.DAYS);
+        for (int i = 0; i < invoices; i++) {
+            UUID id = idAt(start.plus(i, ChronoUnit.MINUTES));
+            jdbcTemplate.update("insert into " + invoicePartitions.tableFor(id) + " (id,user_id,amount,status) values(?,?,?,?)",
+                    id, "old", 20, "READY");
+        }
+    }
+
+    private long oldInvoiceCount() {
+        return invoiceTotalsService.findByUserId("old").stream().mapToLong(InvoiceTotals::getInvoiceCount).sum();
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+    }
+
+    private String status(Invoice invoice) {
+        UUID id = UUID.fromString(invoice.getId());
+        return jdbcTemplate.queryForObject("select status from " + invoicePartitions.tableFor(id) + " where id = ?",
+                String.class, id);
+    }
+
+    private static UUID idAt(Instant instant) {
+        UUID lowest = InvoiceIds.lowerBound(instant);
+        return new UUID(lowest.getMostSignificantBits(),
+                lowest.getLeastSignificantBits() | ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL);
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
@@ -0,0 +1,77 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchive;
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchiveProperties;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Paging through the invoices of one user. How the lookup time behaves while the table grows is measured by
+ * InvoiceUserQueryBenchmark in SpringBoot-Basics-Benchmarks, this only checks the results and that the query
+ * is served from the {@code (user_id, id)} index.
+ */
+class InvoiceServiceUserQueryTests {
+
+    private static final int USERS = 50;
+    private static final int INVOICES_PER_USER = 40;
+    private static final int PAGE_SIZE = 20;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private InvoiceService invoiceService;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:user-query", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate.update("insert into invoices (user_id,amount) select 'user' || mod(x, ?), 10 from system_range(1, ?)",
+                USERS, USERS * INVOICES_PER_USER);
+        invoiceService = new InvoiceService(jdbcTemplate, null, null, null, null,
+                new InvoicePartitions(jdbcTemplate, null, false), new InvoiceArchive(new InvoiceArchiveProperties()),
+                new SimpleMeterRegistry(), 500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("drop all objects");
+        dataSource.destroy();
+    }
+
+    @Test
+    void userLookupUsesTheIndex() {
+        String plan = jdbcTemplate.queryForObject(
+                "explain select id from invoices where user_id = 'user1' and id > random_uuid() order by id limit 20",
+                String.class);
+        assertThat(plan).containsIgnoringCase("invoices_user_id_idx");
+    }
+
+    @Test
+    void pagesThroughTheInvoicesOfOneUser() {
+        List<String> expected = jdbcTemplate.queryForList(
+                "select id from invoices where user_id = 'user7' order by id", UUID.class)
+                .stream().map(UUID::toString).collect(Collectors.toList());
+
+        List<Invoice> first = invoiceService.findByUserId("user7", null, PAGE_SIZE);
+        UUID after = UUID.fromString(first.get(first.size() - 1).getId());
+        List<Invoice> second = invoiceService.findByUserId("user7", after, PAGE_SIZE);
+        UUID last = UUID.fromString(second.get(second.size() - 1).getId());
+
+        assertThat(first).extracting(Invoice::getId).isEqualTo(expected.subList(0, PAGE_SIZE));
+        assertThat(second).extracting(Invoice::getId).isEqualTo(expected.subList(PAGE_SIZE, 2 * PAGE_SIZE));
+        assertThat(invoiceService.findByUserId("user7", last, PAGE_SIZE)).isEmpty();
+    }
+}
@@ -0,0 +1,131 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchive;
+import com.pankaj.myfancyppdfinvoices.springboot.archive.InvoiceArchiveProperties;
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceTotals;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class InvoiceTotalsServiceTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private InvoiceTotalsService invoiceTotalsService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:invoice-totals;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        ProxyFactory proxyFactory = new ProxyFactory(new InvoiceTotalsService(jdbcTemplate,
+                new InvoicePartitions(jdbcTemplate, transactionManager, false),
+                new InvoiceArchive(new InvoiceArchiveProperties()), transactionManager, 3, 4));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        invoiceTotalsService = (InvoiceTotalsService) proxyFactory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("drop all objects");
+    }
+
+    @Test
+    void addsUpInvoicesPerUser() {
+        transactionTemplate.executeWithoutResult(status -> invoiceTotalsService.add(Arrays.asList(
+                new Invoice("alice", 10, null), new Invoice("bob", 20, null), new Invoice("alice", 30, null))));
+        transactionTemplate.executeWithoutResult(status -> invoiceTotalsService.add(Arrays.asList(
+                new Invoice("alice", 5, null))));
+
+        assertThat(invoiceTotalsService.findAll()).extracting(InvoiceTotals::getUserId, InvoiceTotals::getInvoiceCount,
+                InvoiceTotals::getAmountSum).containsExactly(
+                tuple("alice", 3L, 45L),
+                tuple("bob", 1L, 20L));
+        assertThat(invoiceTotalsService.findByUserId("bob")).hasSize(1);
+        assertThat(invoiceTotalsService.findByUserId("carol")).isEmpty();
+    }
+
+    @Test
+    void rolledBackInvoicesDoNotCount() {
+        transactionTemplate.executeWithoutResult(status -> {
+            invoiceTotalsService.add(Arrays.asList(new Invoice("alice", 10, null)));
+            status.setRollbackOnly();
+        });
+
+        assertThat(invoiceTotalsService.findAll()).isEmpty();
+    }
+
+    @Test
+    void refusesToRunOutsideATransaction() {
+        assertThatThrownBy(() -> invoiceTotalsService.add(Arrays.asList(new Invoice("alice", 10, null))))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+
+    @Test
+    void concurrentTransactionsForTheSameUsersAddUp() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            // eight transactions in a row race to insert the first row of the same user
+            String userId = "user" + i / 8;
+            futures.add(executor.submit(() -> {
+                start.await();
+                transactionTemplate.executeWithoutResult(status ->
+                        invoiceTotalsService.add(Arrays.asList(new Invoice(userId, 10, null))));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(invoiceTotalsService.findAll()).hasSize(100).allSatisfy(totals -> {
+            assertThat(totals.getInvoiceCount()).isEqualTo(8);
+            assertThat(totals.getAmountSum()).isEqualTo(80);
+        });
+    }
+
+    @Test
+    void rebuildMatchesAGroupByOverAllInvoices() {
+        jdbcTemplate.update("insert into invoices (user_id,amount) select 'user' || mod(x, 17), x from system_range(1, 1000)");
+        jdbcTemplate.update("insert into invoice_totals (user_id,invoice_count,amount_sum) values('stale', 1, 1)");
+
+        assertThat(invoiceTotalsService.rebuild()).isEqualTo(17);
+
+        List<InvoiceTotals> expected = jdbcTemplate.query(
+                "select user_id, count(*), sum(amount) from invoices group by user_id order by user_id",
+                (resultSet, rowNum) -> new InvoiceTotals(resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3)));
+        assertThat(invoiceTotalsService.findAll()).usingFieldByFieldElementComparator().isEqualTo(expected);
+    }
+}
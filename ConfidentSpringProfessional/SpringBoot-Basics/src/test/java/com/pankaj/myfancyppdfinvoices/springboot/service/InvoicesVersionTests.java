@@ -0,0 +1,53 @@
+package com.pankaj.myfancyppdfinvoices.springboot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvoicesVersionTests {
+
+    private final InvoicesVersion invoicesVersion = new InvoicesVersion();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void bumpsRightAwayWithoutTransaction() {
+        String before = invoicesVersion.current();
+
+        invoicesVersion.bump();
+
+        assertThat(invoicesVersion.current()).isNotEqualTo(before);
+    }
+
+    @Test
+    void bumpsOnlyOnceTheTransactionHasCommitted() {
+        String before = invoicesVersion.current();
+        TransactionSynchronizationManager.initSynchronization();
+
+        invoicesVersion.bump();
+        assertThat(invoicesVersion.current()).isEqualTo(before);
+
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        assertThat(invoicesVersion.current()).isNotEqualTo(before);
+    }
+
+    @Test
+    void keepsTheVersionWhenTheTransactionRollsBack() {
+        String before = invoicesVersion.current();
+        TransactionSynchronizationManager.initSynchronization();
+
+        invoicesVersion.bump();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(invoicesVersion.current()).isEqualTo(before);
+    }
+}
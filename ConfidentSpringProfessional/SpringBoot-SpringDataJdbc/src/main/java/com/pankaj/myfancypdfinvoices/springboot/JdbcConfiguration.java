@@ -0,0 +1,55 @@
+package com.pankaj.myfancypdfinvoices.springboot;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jdbc.core.convert.JdbcCustomConversions;
+import org.springframework.data.jdbc.core.mapping.BasicJdbcPersistentProperty;
+import org.springframework.data.jdbc.core.mapping.JdbcMappingContext;
+import org.springframework.data.jdbc.repository.config.AbstractJdbcConfiguration;
+import org.springframework.data.mapping.model.Property;
+import org.springframework.data.mapping.model.SimpleTypeHolder;
+import org.springframework.data.relational.core.mapping.NamingStrategy;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+
+import java.util.Optional;
+
+/**
+ * Maps the plain model classes without Spring Data annotations: tables are named in the plural
+ * ({@code Invoice} lives in {@code invoices}) and a property called {@code id} is the identifier, as if it
+ * carried {@code @Id}.
+ */
+@Configuration
+public class JdbcConfiguration extends AbstractJdbcConfiguration {
+
+    @Bean
+    public NamingStrategy namingStrategy() {
+        return new NamingStrategy() {
+            @Override
+            public String getTableName(Class<?> type) {
+                return NamingStrategy.super.getTableName(type) + "s";
+            }
+        };
+    }
+
+    @Bean
+    @Override
+    public JdbcMappingContext jdbcMappingContext(Optional<NamingStrategy> namingStrategy,
+                                                 JdbcCustomConversions customConversions) {
+        JdbcMappingContext mappingContext = new JdbcMappingContext(namingStrategy.orElse(NamingStrategy.INSTANCE)) {
+            @Override
+            protected RelationalPersistentProperty createPersistentProperty(Property property,
+                                                                            RelationalPersistentEntity<?> owner,
+                                                                            SimpleTypeHolder simpleTypeHolder) {
+                return new BasicJdbcPersistentProperty(property, owner, simpleTypeHolder, getNamingStrategy()) {
+                    @Override
+                    public boolean isIdProperty() {
+                        return super.isIdProperty() || "id".equals(getName());
+                    }
+                };
+            }
+        };
+        mappingContext.setSimpleTypeHolder(customConversions.getSimpleTypeHolder());
+        return mappingContext;
+    }
+}
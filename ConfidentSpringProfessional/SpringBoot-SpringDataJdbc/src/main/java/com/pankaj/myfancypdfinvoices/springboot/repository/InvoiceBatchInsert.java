@@ -0,0 +1,16 @@
+package com.pankaj.myfancypdfinvoices.springboot.repository;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+
+import java.util.List;
+
+public interface InvoiceBatchInsert {
+
+    /**
+     * Inserts all invoices in one transaction, in JDBC batches of {@code invoices.batch.chunk-size} rows, where
+     * {@code saveAll} sends one insert per invoice. Invoices without an id get a time-ordered
+     * {@link com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds} id. The invoices must be new: an invoice
+     * that already has an id is inserted too, where {@code saveAll} would update it.
+     */
+    List<Invoice> insertAll(List<Invoice> invoices);
+}
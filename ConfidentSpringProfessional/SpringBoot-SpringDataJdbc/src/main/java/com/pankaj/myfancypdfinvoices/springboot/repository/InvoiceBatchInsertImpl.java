@@ -0,0 +1,47 @@
+package com.pankaj.myfancypdfinvoices.springboot.repository;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceIds;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Found by Spring Data through its name, the {@code Impl} suffix, and mixed into {@link InvoiceRepository}.
+ */
+class InvoiceBatchInsertImpl implements InvoiceBatchInsert {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchChunkSize;
+
+    InvoiceBatchInsertImpl(JdbcTemplate jdbcTemplate, @Value("${invoices.batch.chunk-size:500}") int batchChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    @Override
+    @Transactional
+    public List<Invoice> insertAll(List<Invoice> invoices) {
+        for (Invoice invoice : invoices) {
+            if (invoice.getId() == null) {
+                invoice.setId(InvoiceIds.next().toString());
+            }
+            if (invoice.getStatus() == null) {
+                invoice.setStatus(InvoiceStatus.READY);
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into invoices (id,user_id,pdf_url,amount,status) values (?,?,?,?,?)",
+                invoices, batchChunkSize, (ps, invoice) -> {
+                    ps.setObject(1, UUID.fromString(invoice.getId()));
+                    ps.setString(2, invoice.getUserId());
+                    ps.setString(3, invoice.getPdfUrl());
+                    ps.setInt(4, invoice.getAmount());
+                    ps.setString(5, invoice.getStatus().name());
+                });
+        return invoices;
+    }
+}
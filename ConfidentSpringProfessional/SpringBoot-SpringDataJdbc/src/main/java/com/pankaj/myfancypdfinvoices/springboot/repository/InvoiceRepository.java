@@ -1,10 +1,43 @@
 package com.pankaj.myfancypdfinvoices.springboot.repository;
 
 import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
+/**
+ * Besides the CRUD methods and offset pages ({@link #findAll(org.springframework.data.domain.Pageable)}), this has
+ * keyset pages: ordered by id, starting right after the id of the last invoice of the previous page. Unlike an
+ * offset, a keyset page is found in the primary key (or {@code (user_id, id)}) index directly, so later pages cost
+ * as little as the first one. The summary queries read only the columns a list screen shows. All of them map
+ * rows with a plain {@link org.springframework.jdbc.core.RowMapper}.
+ * <p>
+ * {@link InvoiceBatchInsert#insertAll} stores many new invoices in JDBC batches.
+ */
 @Repository
-public interface InvoiceRepository extends CrudRepository<Invoice,String> {
+public interface InvoiceRepository extends PagingAndSortingRepository<Invoice,String>, InvoiceBatchInsert {
+
+    @Query(value = "select id,user_id,pdf_url,amount,status from invoices order by id limit :limit",
+            rowMapperClass = InvoiceRowMapper.class)
+    List<Invoice> findFirstPage(@Param("limit") int limit);
+
+    @Query(value = "select id,user_id,pdf_url,amount,status from invoices where id > :after order by id limit :limit",
+            rowMapperClass = InvoiceRowMapper.class)
+    List<Invoice> findPageAfter(@Param("after") String after, @Param("limit") int limit);
+
+    @Query(value = "select id,user_id,pdf_url,amount,status from invoices where user_id = :userId and id > :after order by id limit :limit",
+            rowMapperClass = InvoiceRowMapper.class)
+    List<Invoice> findPageByUserIdAfter(@Param("userId") String userId, @Param("after") String after,
+                                        @Param("limit") int limit);
+
+    @Query(value = "select id,amount from invoices order by id limit :limit",
+            rowMapperClass = InvoiceSummaryRowMapper.class)
+    List<InvoiceSummary> findFirstSummaries(@Param("limit") int limit);
 
+    @Query(value = "select id,amount from invoices where id > :after order by id limit :limit",
+            rowMapperClass = InvoiceSummaryRowMapper.class)
+    List<InvoiceSummary> findSummariesAfter(@Param("after") String after, @Param("limit") int limit);
 }
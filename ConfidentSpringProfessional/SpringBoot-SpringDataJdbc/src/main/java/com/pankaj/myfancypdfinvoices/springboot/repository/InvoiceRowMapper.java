@@ -0,0 +1,26 @@
+package com.pankaj.myfancypdfinvoices.springboot.repository;
+
+import com.pankaj.myfancyppdfinvoices.springboot.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.springboot.model.InvoiceStatus;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the columns straight into an invoice. Spring Data's own entity mapping looks up and converts every
+ * property for every row, which costs more than the query itself for a page of invoices.
+ */
+public class InvoiceRowMapper implements RowMapper<Invoice> {
+
+    @Override
+    public Invoice mapRow(ResultSet resultSet, int rowNum) throws SQLException {
+        Invoice invoice = new Invoice();
+        invoice.setId(resultSet.getObject("id").toString());
+        invoice.setUserId(resultSet.getString("user_id"));
+        invoice.setPdfUrl(resultSet.getString("pdf_url"));
+        invoice.setAmount(resultSet.getInt("amount"));
+        invoice.setStatus(InvoiceStatus.valueOf(resultSet.getString("status")));
+        return invoice;
+    }
+}
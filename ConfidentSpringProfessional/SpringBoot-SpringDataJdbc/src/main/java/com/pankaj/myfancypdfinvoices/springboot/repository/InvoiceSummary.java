@@ -0,0 +1,22 @@
+package com.pankaj.myfancypdfinvoices.springboot.repository;
+
+/**
+ * The id and amount of an invoice, for list screens that don't need the rest.
+ */
+public class InvoiceSummary {
+    private final String id;
+    private final Integer amount;
+
+    public InvoiceSummary(String id, Integer amount) {
+        this.id = id;
+        this.amount = amount;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Integer getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,14 @@
+package com.pankaj.myfancypdfinvoices.springboot.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class InvoiceSummaryRowMapper implements RowMapper<InvoiceSummary> {
+
+    @Override
+    public InvoiceSummary mapRow(ResultSet resultSet, int rowNum) throws SQLException {
+        return new InvoiceSummary(resultSet.getObject("id").toString(), resultSet.getInt("amount"));
+    }
+}
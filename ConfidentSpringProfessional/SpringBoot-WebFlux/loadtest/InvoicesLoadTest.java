@@ -0,0 +1,89 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test for the invoice API: every client thread sends requests back to back and the first third
+ * of the run (at most 5s) is not measured. {@code {user}} in the URL is replaced by a random user0..user999. With
+ * {@code post} the requests create invoices for random users instead.
+ * <p>
+ * {@code java loadtest/InvoicesLoadTest.java [url] [concurrency] [seconds] [get|post]}. It works against this
+ * application and the blocking SpringBoot-Basics one alike, e.g. both with a budget of 4 request threads:
+ * <pre>
+ * java -Dreactor.netty.ioWorkerCount=4 -jar target/myfancyppdfinvoices-webflux-0.0.1-SNAPSHOT.jar
+ * java -jar ../SpringBoot-Basics/target/myfancyppdfinvoices-0.0.1-SNAPSHOT-exec.jar --server.tomcat.threads.max=4
+ * java loadtest/InvoicesLoadTest.java http://localhost:8080/invoices 512 30 post
+ * java loadtest/InvoicesLoadTest.java "http://localhost:8080/invoices?user_id={user}&amp;limit=20" 512 30 get
+ * </pre>
+ */
+public class InvoicesLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080/invoices?user_id={user}&limit=20";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        boolean post = args.length > 3 && args[3].equals("post");
+
+        HttpClient client = HttpClient.newHttpClient();
+        long warmUpEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.min(5, seconds / 3));
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < end) {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    String user = "user" + random.nextInt(1000);
+                    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url.replace("{user}", user)))
+                            .timeout(Duration.ofSeconds(30));
+                    if (post) {
+                        builder.header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(
+                                        "{\"user_id\":\"" + user + "\",\"amount\":" + (10 + random.nextInt(41)) + "}"));
+                    }
+                    HttpRequest request = builder.build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    if (start > warmUpEnd) {
+                        latencies.add(System.nanoTime() - start);
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        if (sorted.length == 0) {
+            System.out.println("no requests completed, errors " + errors.get());
+            return;
+        }
+        double measuredSeconds = seconds - Math.min(5, seconds / 3);
+        System.out.printf("%s %s c=%d: %.0f req/s, p50 %.1f ms, p99 %.1f ms, max %.1f ms, errors %d%n",
+                post ? "POST" : "GET", url, concurrency, sorted.length / measuredSeconds, millis(sorted, 0.50), millis(sorted, 0.99),
+                sorted[sorted.length - 1] / 1e6, errors.get());
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1e6;
+    }
+}
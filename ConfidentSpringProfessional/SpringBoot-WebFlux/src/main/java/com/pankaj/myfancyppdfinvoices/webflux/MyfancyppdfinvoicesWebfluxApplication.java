@@ -0,0 +1,13 @@
+package com.pankaj.myfancyppdfinvoices.webflux;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class MyfancyppdfinvoicesWebfluxApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(MyfancyppdfinvoicesWebfluxApplication.class, args);
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.pankaj.myfancyppdfinvoices.webflux.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+public class InvoiceDto {
+
+    @JsonProperty("user_id")
+    @NotBlank
+    private String userId;
+    @NotNull
+    @Min(10)
+    @Max(50)
+    private Integer amount;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public Integer getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Integer amount) {
+        this.amount = amount;
+    }
+}
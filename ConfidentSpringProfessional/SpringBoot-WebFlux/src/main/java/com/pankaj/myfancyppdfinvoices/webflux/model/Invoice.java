@@ -0,0 +1,62 @@
+package com.pankaj.myfancyppdfinvoices.webflux.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class Invoice {
+    private String id;
+    @JsonProperty("user_id")
+    private String userId;
+    @JsonProperty("pdf_url")
+    private String pdfUrl;
+    private Integer amount;
+    private InvoiceStatus status;
+
+    public Invoice(){};
+
+    public Invoice(String userId,Integer amount,String pdfUrl) {
+        this.id = InvoiceIds.next().toString();
+        this.userId = userId;
+        this.amount = amount;
+        this.pdfUrl = pdfUrl;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getPdfUrl() {
+        return pdfUrl;
+    }
+
+    public void setPdfUrl(String pdfUrl) {
+        this.pdfUrl = pdfUrl;
+    }
+
+    public Integer getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Integer amount) {
+        this.amount = amount;
+    }
+
+    public InvoiceStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(InvoiceStatus status) {
+        this.status = status;
+    }
+}
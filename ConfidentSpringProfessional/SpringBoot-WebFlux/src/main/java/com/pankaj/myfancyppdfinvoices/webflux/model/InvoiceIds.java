@@ -0,0 +1,32 @@
+package com.pankaj.myfancyppdfinvoices.webflux.model;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered invoice ids in the UUIDv7 layout: 48 bits of Unix epoch milliseconds, the version, a 12 bit counter
+ * and 62 random bits. Ids made later sort after earlier ones, so new rows go to the right-hand end of the primary key
+ * index instead of to random pages, and the id is known before the insert.
+ * <p>
+ * Within one JVM ids are strictly increasing: the counter orders ids of the same millisecond, and if it runs out
+ * the next millisecond is borrowed. The random bits come from a {@link SecureRandom}, like
+ * {@link UUID#randomUUID()}, since ids end up in PDF urls and should not be guessable.
+ */
+public final class InvoiceIds {
+
+    private static final SecureRandom random = new SecureRandom();
+    private static final AtomicLong lastTimestampAndCounter = new AtomicLong();
+
+    private InvoiceIds() {
+    }
+
+    public static UUID next() {
+        long now = System.currentTimeMillis() << 12;
+        long timestampAndCounter = lastTimestampAndCounter.updateAndGet(last -> Math.max(now, last + 1));
+
+        long mostSigBits = (timestampAndCounter >>> 12) << 16 | 0x7000L | (timestampAndCounter & 0xFFFL);
+        long leastSigBits = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,91 @@
+package com.pankaj.myfancyppdfinvoices.webflux.repository;
+
+import com.pankaj.myfancyppdfinvoices.webflux.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.webflux.model.InvoiceStatus;
+import io.r2dbc.spi.Row;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * The invoices table over R2DBC. Results are emitted as rows arrive, and only as fast as the subscriber requests
+ * them, so a slow client slows down reading instead of filling the heap.
+ * <p>
+ * H2 runs inside the JVM, so r2dbc-h2 executes each statement on the thread that subscribes, which is an event
+ * loop thread. That is fine for the short indexed queries here. With a database on the network, like Postgres
+ * and r2dbc-postgresql, the event loop only sends the query and picks up the rows when they arrive.
+ */
+@Component
+public class InvoiceRepository {
+
+    private static final String COLUMNS = "id,user_id,pdf_url,amount,status";
+
+    private final DatabaseClient databaseClient;
+
+    public InvoiceRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<Invoice> findAll() {
+        return databaseClient.execute("select " + COLUMNS + " from invoices")
+                .map((row, metadata) -> toInvoice(row))
+                .all();
+    }
+
+    /**
+     * Keyset pagination: at most {@code limit} invoices ordered by id, starting right after the given id (or from
+     * the beginning if {@code after} is null).
+     */
+    public Flux<Invoice> findPage(UUID after, int limit) {
+        DatabaseClient.GenericExecuteSpec select = after == null
+                ? databaseClient.execute("select " + COLUMNS + " from invoices order by id limit :limit")
+                : databaseClient.execute("select " + COLUMNS + " from invoices where id > :after order by id limit :limit")
+                        .bind("after", after);
+        return select.bind("limit", limit)
+                .map((row, metadata) -> toInvoice(row))
+                .all();
+    }
+
+    /**
+     * Keyset pagination over the invoices of one user, served from the {@code (user_id, id)} index.
+     */
+    public Flux<Invoice> findByUserId(String userId, UUID after, int limit) {
+        DatabaseClient.GenericExecuteSpec select = after == null
+                ? databaseClient.execute("select " + COLUMNS + " from invoices where user_id = :userId order by id limit :limit")
+                : databaseClient.execute("select " + COLUMNS + " from invoices where user_id = :userId and id > :after order by id limit :limit")
+                        .bind("after", after);
+        return select.bind("userId", userId)
+                .bind("limit", limit)
+                .map((row, metadata) -> toInvoice(row))
+                .all();
+    }
+
+    /**
+     * Inserts the invoice and emits it once the insert is done. The id is the one the invoice was created with.
+     */
+    public Mono<Invoice> insert(Invoice invoice) {
+        return databaseClient.execute("insert into invoices (id,user_id,pdf_url,amount,status) "
+                + "values (:id,:userId,:pdfUrl,:amount,:status)")
+                .bind("id", UUID.fromString(invoice.getId()))
+                .bind("userId", invoice.getUserId())
+                .bind("pdfUrl", invoice.getPdfUrl())
+                .bind("amount", invoice.getAmount())
+                .bind("status", invoice.getStatus().name())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(invoice);
+    }
+
+    private static Invoice toInvoice(Row row) {
+        Invoice invoice = new Invoice();
+        invoice.setId(row.get("id", UUID.class).toString());
+        invoice.setUserId(row.get("user_id", String.class));
+        invoice.setPdfUrl(row.get("pdf_url", String.class));
+        invoice.setAmount(row.get("amount", Integer.class));
+        invoice.setStatus(InvoiceStatus.valueOf(row.get("status", String.class)));
+        return invoice;
+    }
+}
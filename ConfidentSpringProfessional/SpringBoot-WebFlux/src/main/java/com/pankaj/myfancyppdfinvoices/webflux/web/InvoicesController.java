@@ -0,0 +1,64 @@
+package com.pankaj.myfancyppdfinvoices.webflux.web;
+
+import com.pankaj.myfancyppdfinvoices.webflux.dto.InvoiceDto;
+import com.pankaj.myfancyppdfinvoices.webflux.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.webflux.model.InvoiceStatus;
+import com.pankaj.myfancyppdfinvoices.webflux.repository.InvoiceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.util.UUID;
+
+/**
+ * The invoice API of SpringBoot-Basics without a thread per request: handlers return right away and the response
+ * is written when the database has answered.
+ */
+@RestController
+@Validated
+public class InvoicesController {
+
+    private final InvoiceRepository invoiceRepository;
+    private final String cdnUrl;
+
+    public InvoicesController(InvoiceRepository invoiceRepository, @Value("${cdn.url}") String cdnUrl) {
+        this.invoiceRepository = invoiceRepository;
+        this.cdnUrl = cdnUrl;
+    }
+
+    /**
+     * Without parameters this returns every invoice, with {@code after} and/or {@code limit} one keyset page, and
+     * with {@code user_id} a page of that user's invoices. Ask for application/x-ndjson to get the invoices
+     * written one by one as they are read, at the pace the client reads them.
+     */
+    @GetMapping("/invoices")
+    public Flux<Invoice> invoices(@RequestParam(name = "user_id", required = false) String userId,
+                                  @RequestParam(required = false) UUID after,
+                                  @RequestParam(required = false) @Min(1) @Max(1000) Integer limit) {
+        if (userId != null) {
+            return invoiceRepository.findByUserId(userId, after, limit == null ? 100 : limit);
+        }
+        if (after == null && limit == null) {
+            return invoiceRepository.findAll();
+        }
+        return invoiceRepository.findPage(after, limit == null ? 100 : limit);
+    }
+
+    @PostMapping("/invoices")
+    public Mono<Invoice> createInvoice(@Valid @RequestBody Mono<InvoiceDto> invoiceDto) {
+        return invoiceDto.flatMap(dto -> {
+            Invoice invoice = new Invoice(dto.getUserId(), dto.getAmount(), cdnUrl + "/images/default/sample.pdf");
+            invoice.setStatus(InvoiceStatus.READY);
+            return invoiceRepository.insert(invoice);
+        });
+    }
+}
@@ -0,0 +1,10 @@
+create table if not exists invoices
+(
+    id      uuid  default random_uuid() primary key,
+    pdf_url varchar(255),
+    user_id varchar(255),
+    amount  int,
+    status  varchar(16) default 'READY'
+);
+
+create index if not exists invoices_user_id_idx on invoices (user_id, id);
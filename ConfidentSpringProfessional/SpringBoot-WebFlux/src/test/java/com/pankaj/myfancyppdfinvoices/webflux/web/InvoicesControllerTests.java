@@ -0,0 +1,95 @@
+package com.pankaj.myfancyppdfinvoices.webflux.web;
+
+import com.pankaj.myfancyppdfinvoices.webflux.WebConfiguration;
+import com.pankaj.myfancyppdfinvoices.webflux.model.Invoice;
+import com.pankaj.myfancyppdfinvoices.webflux.model.InvoiceStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.r2dbc.url=r2dbc:h2:mem:///webflux-tests?options=DB_CLOSE_DELAY=-1")
+class InvoicesControllerTests {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void createsInvoicesAndPagesThroughThemByUser() {
+        for (int i = 0; i < 5; i++) {
+            Invoice created = create("pager", 20 + i);
+            assertThat(created.getId()).isNotNull();
+            assertThat(created.getStatus()).isEqualTo(InvoiceStatus.READY);
+        }
+
+        List<Invoice> firstPage = webTestClient.get().uri("/invoices?user_id=pager&limit=3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Invoice.class).returnResult().getResponseBody();
+        assertThat(firstPage).extracting(Invoice::getAmount).containsExactly(20, 21, 22);
+
+        List<Invoice> secondPage = webTestClient.get()
+                .uri("/invoices?user_id=pager&limit=3&after={after}", firstPage.get(2).getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Invoice.class).returnResult().getResponseBody();
+        assertThat(secondPage).extracting(Invoice::getAmount).containsExactly(23, 24);
+    }
+
+    @Test
+    void streamsInvoicesAsNdjson() {
+        for (int i = 0; i < 3; i++) {
+            create("streamer", 30);
+        }
+
+        // one JSON object per line
+        Flux<String> lines = webTestClient.get().uri("/invoices")
+                .accept(WebConfiguration.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(WebConfiguration.APPLICATION_NDJSON)
+                .returnResult(String.class).getResponseBody();
+
+        StepVerifier.create(lines.filter(line -> line.startsWith("{") && line.contains("\"user_id\":\"streamer\"")))
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void rejectsInvalidInvoices() {
+        Map<String, Object> invoice = new HashMap<>();
+        invoice.put("user_id", "invalid");
+        invoice.put("amount", 5);
+        webTestClient.post().uri("/invoices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(invoice)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/invoices?limit=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private Invoice create(String userId, int amount) {
+        Map<String, Object> invoice = new HashMap<>();
+        invoice.put("user_id", userId);
+        invoice.put("amount", amount);
+        return webTestClient.post().uri("/invoices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(invoice)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Invoice.class).returnResult().getResponseBody();
+    }
+}
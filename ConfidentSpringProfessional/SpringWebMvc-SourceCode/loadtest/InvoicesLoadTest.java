@@ -0,0 +1,78 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test for a running ApplicationLauncher: every client thread sends GET requests back to back
+ * and the first third of the run (at most 5s) is not measured. {@code {user}} in the URL is replaced by a random
+ * user0..user999.
+ * <p>
+ * {@code java loadtest/InvoicesLoadTest.java [url] [concurrency] [seconds] [http1|http2]}, e.g. compare
+ * the default connector with {@code -Dspring.profiles.active=highconcurrency}.
+ */
+public class InvoicesLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080/invoices?user_id={user}&limit=20";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        HttpClient.Version version = args.length > 3 && args[3].equals("http2")
+                ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+
+        HttpClient client = HttpClient.newBuilder().version(version).build();
+        long warmUpEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.min(5, seconds / 3));
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < end) {
+                    String user = "user" + ThreadLocalRandom.current().nextInt(1000);
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(url.replace("{user}", user)))
+                            .timeout(Duration.ofSeconds(30))
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    if (start > warmUpEnd) {
+                        latencies.add(System.nanoTime() - start);
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        if (sorted.length == 0) {
+            System.out.println("no requests completed, errors " + errors.get());
+            return;
+        }
+        double measuredSeconds = seconds - Math.min(5, seconds / 3);
+        System.out.printf("%s c=%d %s: %.0f req/s, p50 %.1f ms, p99 %.1f ms, max %.1f ms, errors %d%n",
+                url, concurrency, version, sorted.length / measuredSeconds, millis(sorted, 0.50), millis(sorted, 0.99),
+                sorted[sorted.length - 1] / 1e6, errors.get());
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1e6;
+    }
+}
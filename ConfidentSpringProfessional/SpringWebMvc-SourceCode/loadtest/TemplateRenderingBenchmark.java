@@ -0,0 +1,60 @@
+import com.pankaj.myfancypdfinvoices.context.ApplicationConfiguration;
+import org.springframework.context.support.GenericApplicationContext;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.spring5.templateresolver.SpringResourceTemplateResolver;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders index.html in a loop, once with the engine the dev profile gets (no template cache, the template is parsed
+ * every time) and once with the production one, both built by ApplicationConfiguration. login.html needs a web
+ * request to bind its form, so compare it over HTTP with InvoicesLoadTest.java instead.
+ * <p>
+ * {@code mvn -q dependency:build-classpath -Dmdep.outputFile=cp.txt} and then
+ * {@code java -cp target/classes:$(cat cp.txt) loadtest/TemplateRenderingBenchmark.java [seconds per round]}
+ */
+public class TemplateRenderingBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        long roundNanos = TimeUnit.SECONDS.toNanos(args.length > 0 ? Long.parseLong(args[0]) : 2);
+        run("dev", engine(false), roundNanos);
+        run("production", engine(true), roundNanos);
+    }
+
+    private static SpringTemplateEngine engine(boolean cacheable) {
+        ApplicationConfiguration configuration = new ApplicationConfiguration();
+        SpringResourceTemplateResolver templateResolver = configuration.templateResolver(cacheable, 0);
+        // resolves classpath: resources, which is all the resolver needs the application context for
+        templateResolver.setApplicationContext(new GenericApplicationContext());
+        return configuration.templateEngine(templateResolver);
+    }
+
+    private static void run(String mode, SpringTemplateEngine engine, long roundNanos) {
+        Context context = new Context(Locale.ENGLISH);
+        context.setVariable("username", "zarco");
+        context.setVariable("currentDate", new Date());
+
+        // the first round only warms up the JIT and the caches
+        long checksum = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long renders = 0;
+            long start = System.nanoTime();
+            long end = start + roundNanos;
+            while (System.nanoTime() < end) {
+                checksum += engine.process("index.html", context).length();
+                renders++;
+            }
+            if (round > 0) {
+                double micros = (System.nanoTime() - start) / 1e3 / renders;
+                System.out.printf("%-10s round %d: %8.1f us/render, %8.0f renders/s%n", mode, round, micros,
+                        1e6 / micros);
+            }
+        }
+        System.out.println(mode + " checksum " + checksum);
+    }
+}
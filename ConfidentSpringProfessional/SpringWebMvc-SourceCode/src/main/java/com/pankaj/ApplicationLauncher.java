@@ -4,6 +4,7 @@ import com.pankaj.myfancypdfinvoices.context.ApplicationConfiguration;
 import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
@@ -14,8 +15,8 @@ import javax.servlet.ServletContext;
 public class ApplicationLauncher {
     public static void main(String[] args) throws LifecycleException {
         Tomcat tomcat = new Tomcat();
-        tomcat.setPort(8080);
-        tomcat.getConnector();
+        TomcatConnectorProfile profile = new TomcatConnectorProfile();
+        Connector connector = profile.apply(tomcat);
         Context tomcatCtx = tomcat.addContext("",null);
         WebApplicationContext appCtx = createApplicationContext(tomcatCtx.getServletContext());
         DispatcherServlet dispatcherServlet = new DispatcherServlet(appCtx);
@@ -24,6 +25,7 @@ public class ApplicationLauncher {
         servlet.setLoadOnStartup(1);
         servlet.addMapping("/*");
         tomcat.start();
+        WarmUpRequests.send(connector.getLocalPort(), profile.getProperty("server.warm-up.paths", ""));
     }
 
     private static WebApplicationContext createApplicationContext(ServletContext servletContext) {
@@ -0,0 +1,110 @@
+package com.pankaj;
+
+import org.apache.catalina.Executor;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * The settings of the embedded Tomcat connector, read before the Spring context exists from the same files the
+ * context uses: application.properties, then application-${spring.profiles.active}.properties, then system
+ * properties, e.g. {@code -Dserver.tomcat.threads.max=400}. Every key has a default close to Tomcat's own.
+ */
+public class TomcatConnectorProfile {
+
+    private final Properties properties = new Properties();
+
+    public TomcatConnectorProfile() {
+        load(new ClassPathResource("application.properties"));
+        String profile = System.getProperty("spring.profiles.active");
+        if (profile != null) {
+            load(new ClassPathResource("application-" + profile + ".properties"));
+        }
+        properties.putAll(System.getProperties());
+    }
+
+    /**
+     * Creates the connector and its shared executor and registers both with the given Tomcat.
+     */
+    public Connector apply(Tomcat tomcat) {
+        StandardThreadExecutor executor = new StandardThreadExecutor();
+        executor.setName("tomcatThreadPool");
+        executor.setNamePrefix("http-exec-");
+        executor.setMinSpareThreads(intValue("server.tomcat.threads.min", 10));
+        executor.setMaxThreads(intValue("server.tomcat.threads.max", 200));
+        executor.setMaxQueueSize(intValue("server.tomcat.threads.max-queue-size", Integer.MAX_VALUE));
+        tomcat.getService().addExecutor(executor);
+
+        Connector connector = new Connector(protocolClassName());
+        connector.setPort(intValue("server.port", 8080));
+        // setProperty hands the values on to the protocol handler
+        connector.setProperty("executor", executor.getName());
+        connector.setProperty("acceptCount", value("server.tomcat.accept-count", "100"));
+        connector.setProperty("maxConnections", value("server.tomcat.max-connections", "8192"));
+        connector.setProperty("connectionTimeout", value("server.tomcat.connection-timeout-ms", "20000"));
+        connector.setProperty("keepAliveTimeout", value("server.tomcat.keep-alive-timeout-ms", "20000"));
+        connector.setProperty("maxKeepAliveRequests", value("server.tomcat.max-keep-alive-requests", "100"));
+
+        int compressionMinSize = intValue("server.compression.min-size", 2048);
+        if (compressionMinSize >= 0) {
+            // gzip responses of at least this size for clients sending Accept-Encoding: gzip
+            connector.setProperty("compression", Integer.toString(compressionMinSize));
+            connector.setProperty("compressibleMimeType", value("server.compression.mime-types",
+                    "application/json,application/xml,application/x-jackson-smile,application/cbor,text/html,text/plain"));
+        }
+        if (Boolean.parseBoolean(value("server.http2.enabled", "false"))) {
+            // cleartext HTTP/2: prior knowledge or an h2c upgrade from HTTP/1.1
+            connector.addUpgradeProtocol(new Http2Protocol());
+        }
+
+        tomcat.getService().addConnector(connector);
+        tomcat.setConnector(connector);
+        return connector;
+    }
+
+    /**
+     * Any other launcher setting, with the same lookup order as the connector settings.
+     */
+    public String getProperty(String key, String defaultValue) {
+        return value(key, defaultValue);
+    }
+
+    private String protocolClassName() {
+        String protocol = value("server.tomcat.protocol", "nio");
+        switch (protocol) {
+            case "nio":
+                return "org.apache.coyote.http11.Http11NioProtocol";
+            case "nio2":
+                return "org.apache.coyote.http11.Http11Nio2Protocol";
+            default:
+                throw new IllegalArgumentException("server.tomcat.protocol must be nio or nio2, not " + protocol);
+        }
+    }
+
+    private String value(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue).trim();
+    }
+
+    private int intValue(String key, int defaultValue) {
+        return Integer.parseInt(value(key, Integer.toString(defaultValue)));
+    }
+
+    private void load(Resource resource) {
+        if (!resource.exists()) {
+            return;
+        }
+        try {
+            PropertiesLoaderUtils.fillProperties(properties, resource);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.pankaj;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Sends one GET to each of {@code server.warm-up.paths} once Tomcat has started, so the first real visitors don't
+ * pay for parsing templates, filling the view cache and Spring MVC's lazy initialization.
+ */
+class WarmUpRequests {
+
+    private static final Log log = LogFactory.getLog(WarmUpRequests.class);
+
+    private WarmUpRequests() {
+    }
+
+    static void send(int port, String paths) {
+        for (String path : paths.split(",")) {
+            if (path.trim().isEmpty()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path.trim())
+                        .openConnection();
+                int status = connection.getResponseCode();
+                try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    if (in != null) {
+                        in.transferTo(OutputStream.nullOutputStream());
+                    }
+                }
+                log.info("Warmed up " + path.trim() + ": " + status + " in "
+                        + (System.nanoTime() - start) / 1_000_000 + "ms");
+            } catch (IOException e) {
+                log.warn("Could not warm up " + path.trim(), e);
+            }
+        }
+    }
+}
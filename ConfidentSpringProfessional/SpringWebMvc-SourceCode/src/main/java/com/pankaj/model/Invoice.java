@@ -1,7 +1,6 @@
 package com.pankaj.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.util.UUID;
 
 public class Invoice {
     private String id;
@@ -14,7 +13,7 @@ public class Invoice {
     public Invoice(){};
 
     public Invoice(String userId,Integer amount,String pdfUrl) {
-        this.id = UUID.randomUUID().toString();
+        this.id = InvoiceIds.next().toString();
         this.userId = userId;
         this.amount = amount;
         this.pdfUrl = pdfUrl;
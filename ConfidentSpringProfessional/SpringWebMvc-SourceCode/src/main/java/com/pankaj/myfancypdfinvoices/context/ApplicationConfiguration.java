@@ -2,11 +2,22 @@ package com.pankaj.myfancypdfinvoices.context;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pankaj.ApplicationLauncher;
+import com.pankaj.service.InvoicesVersion;
 import com.pankaj.service.UserService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.cache.interceptor.SimpleKeyGenerator;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
 import org.springframework.context.annotation.*;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.transaction.TransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.validation.beanvalidation.MethodValidationPostProcessor;
@@ -14,7 +25,7 @@ import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.thymeleaf.spring5.SpringTemplateEngine;
 import org.thymeleaf.spring5.templateresolver.SpringResourceTemplateResolver;
 import org.thymeleaf.spring5.view.ThymeleafViewResolver;
-import org.h2.jdbcx.JdbcDataSource;
+import org.vibur.dbcp.ViburDBCPDataSource;
 
 import javax.sql.DataSource;
 
@@ -26,6 +37,7 @@ import javax.sql.DataSource;
         ignoreResourceNotFound = true)
 @EnableWebMvc
 @EnableTransactionManagement
+@EnableCaching
 public class ApplicationConfiguration {
     @Scope(value = ConfigurableBeanFactory.SCOPE_PROTOTYPE)
     public UserService userService() {
@@ -37,50 +49,97 @@ public class ApplicationConfiguration {
         return new MethodValidationPostProcessor();
     }
 
-    @Bean
-    public DataSource dataSource(){
-        JdbcDataSource ds = new JdbcDataSource();
-        ds.setUrl("jdbc:h2:~/Trainings/Spring/SpringTipsAndTricks/ConfidentSpringProfessional/SpringWebMvc-SourceCode/myFirstH2Database;" +
-                "INIT=RUNSCRIPT FROM 'classpath:schema.sql'");
-        ds.setUser("sa");
-        ds.setPassword("sa");
+    /**
+     * A connection pool instead of a new physical connection per JdbcTemplate call or transaction. Prepared statements
+     * are cached per connection, and schema.sql runs once here instead of on every connection. The pool shows up in
+     * JMX as org.vibur.dbcp:type=ViburDBCP-invoices (taken and remaining connections, timeouts, sizes).
+     */
+    @Bean(destroyMethod = "terminate")
+    public ViburDBCPDataSource dataSource(@Value("${datasource.url}") String url,
+                                          @Value("${datasource.username}") String username,
+                                          @Value("${datasource.password}") String password,
+                                          @Value("${datasource.pool.min-size}") int minSize,
+                                          @Value("${datasource.pool.max-size}") int maxSize,
+                                          @Value("${datasource.pool.connection-timeout-ms}") long connectionTimeoutMs,
+                                          @Value("${datasource.statement-cache-max-size}") int statementCacheMaxSize){
+        ViburDBCPDataSource ds = new ViburDBCPDataSource();
+        ds.setName("invoices");
+        ds.setJdbcUrl(url);
+        ds.setUsername(username);
+        ds.setPassword(password);
+        ds.setPoolInitialSize(minSize);
+        ds.setPoolMaxSize(maxSize);
+        ds.setConnectionTimeoutInMs(connectionTimeoutMs);
+        ds.setStatementCacheMaxSize(statementCacheMaxSize);
+        ds.setEnableJMX(true);
+        ds.start();
+
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(ds);
         return ds;
     }
 
     @Bean
-    public TransactionManager platformTransactionManager(){
-        return new DataSourceTransactionManager(dataSource());
+    public TransactionManager platformTransactionManager(DataSource dataSource){
+        return new DataSourceTransactionManager(dataSource);
+    }
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource){
+        return new JdbcTemplate(dataSource);
     }
+    // evictions inside a transaction are delayed until it has committed
     @Bean
-    public JdbcTemplate jdbcTemplate(){
-        return new JdbcTemplate(dataSource());
+    public CacheManager cacheManager(@Value("${invoices.cache.spec}") String cacheSpec){
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager("invoices");
+        caffeineCacheManager.setCacheSpecification(cacheSpec);
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
     }
+
+    /**
+     * Keys of the invoices cache: the {@link InvoicesVersion}, the method name and the arguments. The key is made
+     * before the cached method runs, so a reader that queried before a write files the old rows under the old
+     * version, even when its put comes after the eviction, and requests that got the new ETag never see them.
+     */
+    @Bean
+    public KeyGenerator invoicesKeyGenerator(InvoicesVersion invoicesVersion){
+        return (target, method, params) ->
+                new SimpleKey(invoicesVersion.current(), method.getName(), SimpleKeyGenerator.generateKey(params));
+    }
+
     @Bean
     public ObjectMapper objectMapper() {
         return new ObjectMapper();
     }
 
     @Bean
-    public ThymeleafViewResolver viewResolver(){
+    public ThymeleafViewResolver viewResolver(SpringTemplateEngine templateEngine){
         final ThymeleafViewResolver viewResolver = new ThymeleafViewResolver();
-        viewResolver.setTemplateEngine(templateEngine());
+        viewResolver.setTemplateEngine(templateEngine);
         viewResolver.setOrder(1);//optional
         viewResolver.setViewNames(new String[]{"*.html","*.xhtml"});
         return viewResolver;
     }
 
     @Bean
-    public SpringTemplateEngine templateEngine(){
+    public SpringTemplateEngine templateEngine(SpringResourceTemplateResolver templateResolver){
         final SpringTemplateEngine templateEngine = new SpringTemplateEngine();
-        templateEngine.setTemplateResolver(templateResolver());
+        templateEngine.setTemplateResolver(templateResolver);
         return templateEngine;
     }
 
+    /**
+     * With {@code templates.cacheable} templates are parsed once and the parsed form is kept, for
+     * {@code templates.cache-ttl-ms} or for good if that is 0. The dev profile turns it off, so template changes
+     * show up without a restart.
+     */
     @Bean
-    public SpringResourceTemplateResolver templateResolver() {
+    public SpringResourceTemplateResolver templateResolver(@Value("${templates.cacheable}") boolean cacheable,
+                                                           @Value("${templates.cache-ttl-ms}") long cacheTtlMs) {
         final SpringResourceTemplateResolver templateResolver = new SpringResourceTemplateResolver();
         templateResolver.setPrefix("classpath:/templates/");
-        templateResolver.setCacheable(false);
+        templateResolver.setCacheable(cacheable);
+        if (cacheTtlMs > 0) {
+            templateResolver.setCacheTTLMs(cacheTtlMs);
+        }
         return templateResolver;
     }
 }
@@ -1,85 +1,152 @@
 package com.pankaj.service;
 
 import com.pankaj.model.Invoice;
+import com.pankaj.model.InvoiceIds;
+import com.pankaj.myfancypdfinvoices.dto.InvoiceDto;
 import com.pankaj.model.User;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
 import java.sql.PreparedStatement;
-import java.sql.Statement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 @Component
+@CacheConfig(keyGenerator = "invoicesKeyGenerator")
 public class InvoiceService {
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private final UserService userService;
     private final String cdnUrl;
     private final JdbcTemplate jdbcTemplate;
+    private final int batchChunkSize;
+    private final InvoicesVersion invoicesVersion;
 
     //List<Invoice> invoices = new CopyOnWriteArrayList<>();
 
     // @Autowired // optional in newer spring evrsion as Component scan can detect
-    public InvoiceService(UserService userService, @Value("${cdn.url}") String cdnUrl, JdbcTemplate jdbcTemplate) {
+    public InvoiceService(UserService userService, @Value("${cdn.url}") String cdnUrl, JdbcTemplate jdbcTemplate,
+                          @Value("${invoices.batch.chunk-size:500}") int batchChunkSize,
+                          InvoicesVersion invoicesVersion) {
 
         this.userService = userService;
         this.cdnUrl = cdnUrl;
         this.jdbcTemplate = jdbcTemplate;
+        this.batchChunkSize = batchChunkSize;
+        this.invoicesVersion = invoicesVersion;
     }
 
-    @PostConstruct
-    public void init(){
-        System.out.println("Fetching PDF templates from S3...");
-        //TODO download from S3 and save locally
-    }
+    @Cacheable("invoices")
     @Transactional
     public List<Invoice> findAll(){
-        System.out.println("Is a database transaction open? = " + TransactionSynchronizationManager.isActualTransactionActive());
-        return jdbcTemplate.query("select id,user_id,pdf_url,amount from invoices",(resultSet,rowNum)->{
-            Invoice invoice = new Invoice();
-            invoice.setId(resultSet.getObject("id").toString());
-            invoice.setPdfUrl(resultSet.getString("pdf_url"));
-            invoice.setUserId(resultSet.getString("user_id"));
-            invoice.setAmount(resultSet.getInt("amount"));
-            return invoice;
+        return jdbcTemplate.query("select id,user_id,pdf_url,amount from invoices",(resultSet,rowNum)->toInvoice(resultSet));
+    }
+
+    /**
+     * Keyset pagination: returns at most {@code limit} invoices ordered by id, starting right after
+     * the given id (or from the beginning if {@code after} is null).
+     */
+    @Cacheable("invoices")
+    @Transactional(readOnly = true)
+    public List<Invoice> findPage(UUID after, int limit){
+        if (after == null) {
+            return jdbcTemplate.query("select id,user_id,pdf_url,amount from invoices order by id limit ?",
+                    (resultSet,rowNum)->toInvoice(resultSet), limit);
+        }
+        return jdbcTemplate.query("select id,user_id,pdf_url,amount from invoices where id > ? order by id limit ?",
+                (resultSet,rowNum)->toInvoice(resultSet), after, limit);
+    }
+
+    /**
+     * Keyset pagination over the invoices of one user, ordered by id. Served from the
+     * {@code (user_id, id)} index, so the cost depends on the page size and not on the size of the table.
+     */
+    @Cacheable("invoices")
+    @Transactional(readOnly = true)
+    public List<Invoice> findByUserId(String userId, UUID after, int limit){
+        if (after == null) {
+            return jdbcTemplate.query("select id,user_id,pdf_url,amount from invoices where user_id = ? order by id limit ?",
+                    (resultSet,rowNum)->toInvoice(resultSet), userId, limit);
+        }
+        return jdbcTemplate.query("select id,user_id,pdf_url,amount from invoices where user_id = ? and id > ? order by id limit ?",
+                (resultSet,rowNum)->toInvoice(resultSet), userId, after, limit);
+    }
+
+    /**
+     * Hands every invoice to the consumer as it comes off the ResultSet, so memory use
+     * does not depend on the size of the table.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Invoice> consumer){
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "select id,user_id,pdf_url,amount from invoices",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, resultSet -> {
+            consumer.accept(toInvoice(resultSet));
         });
     }
 
+    /**
+     * The id is a time-ordered {@link InvoiceIds} id made here, so there are no generated keys to read back.
+     */
+    @CacheEvict(value = "invoices", allEntries = true)
     @Transactional
     public Invoice create(String userId, Integer amount) {
-        System.out.println("Is a database transaction open?= " + TransactionSynchronizationManager.isActualTransactionActive());
         String generatedPdfUrl = cdnUrl + "/images/default/sample.pdf";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(
-                    "insert into invoices (user_id,pdf_url,amount) values (?,?,?)",
-                    Statement.RETURN_GENERATED_KEYS);
-
-            ps.setString(1,userId);
-            ps.setString(2, generatedPdfUrl);
-            ps.setInt(3,amount);
-            return ps;
-        },keyHolder);
+        final Invoice invoice = new Invoice(userId, amount, generatedPdfUrl);
+        jdbcTemplate.update("insert into invoices (id,user_id,pdf_url,amount) values (?,?,?,?)",
+                UUID.fromString(invoice.getId()), userId, generatedPdfUrl, amount);
+        invoicesVersion.bump();
+        return invoice;
+    }
 
-        String uuid = !keyHolder.getKeys().isEmpty() ? ((UUID)keyHolder.getKeys().values().iterator().next()).toString():null;
+    /**
+     * Inserts all invoices in one transaction, in JDBC batches of {@code invoices.batch.chunk-size} rows.
+     * Batched statements can't return generated keys, so the ids are generated here and returned
+     * in the order of the input. Being time-ordered, they also go in at the end of the primary key index.
+     */
+    @CacheEvict(value = "invoices", allEntries = true)
+    @Transactional
+    public List<String> createAll(List<InvoiceDto> invoiceDtos) {
+        String generatedPdfUrl = cdnUrl + "/images/default/sample.pdf";
+        List<Invoice> newInvoices = new ArrayList<>(invoiceDtos.size());
+        for (InvoiceDto invoiceDto : invoiceDtos) {
+            newInvoices.add(new Invoice(invoiceDto.getUserId(), invoiceDto.getAmount(), generatedPdfUrl));
+        }
+        jdbcTemplate.batchUpdate("insert into invoices (id,user_id,pdf_url,amount) values (?,?,?,?)",
+                newInvoices, batchChunkSize, (ps, invoice) -> {
+                    ps.setObject(1, UUID.fromString(invoice.getId()));
+                    ps.setString(2, invoice.getUserId());
+                    ps.setString(3, invoice.getPdfUrl());
+                    ps.setInt(4, invoice.getAmount());
+                });
+        invoicesVersion.bump();
 
-        final Invoice invoice = new Invoice();
-        invoice.setId(uuid);
-        invoice.setPdfUrl(generatedPdfUrl);
-        invoice.setUserId(userId);
-        invoice.setAmount(amount);
-        return invoice;
+        List<String> ids = new ArrayList<>(newInvoices.size());
+        for (Invoice invoice : newInvoices) {
+            ids.add(invoice.getId());
+        }
+        return ids;
     }
 
-    @PreDestroy
-    public void shutDown(){
-        System.out.println("Deleting downloaded templates ...");
-        //TODO : Actual deletion of pdfs
+    private static Invoice toInvoice(ResultSet resultSet) throws SQLException {
+        Invoice invoice = new Invoice();
+        invoice.setId(resultSet.getObject("id").toString());
+        invoice.setPdfUrl(resultSet.getString("pdf_url"));
+        invoice.setUserId(resultSet.getString("user_id"));
+        invoice.setAmount(resultSet.getInt("amount"));
+        return invoice;
     }
 }
@@ -0,0 +1,40 @@
+package com.pankaj.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A version stamp for the invoices table, changed by every write to it. Readers take the stamp before they
+ * query, so a response is never tagged with a newer version than the data it contains.
+ */
+@Component
+public class InvoicesVersion {
+
+    // tells the stamps of different application runs apart, the counter starts over on every restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    public String current() {
+        return epoch + "-" + version.get();
+    }
+
+    /**
+     * Moves to a new version once the current transaction has committed, or right away if there is none.
+     * Bumping before the commit would let a reader tag the old rows with the new version.
+     */
+    public void bump() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            version.incrementAndGet();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                version.incrementAndGet();
+            }
+        });
+    }
+}
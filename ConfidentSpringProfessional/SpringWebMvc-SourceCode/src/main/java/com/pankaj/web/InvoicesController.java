@@ -1,25 +1,49 @@
 package com.pankaj.web;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.pankaj.model.Invoice;
 import com.pankaj.myfancypdfinvoices.dto.InvoiceDto;
 import com.pankaj.service.InvoiceService;
+import com.pankaj.service.InvoicesVersion;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @Validated
 public class InvoicesController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private InvoiceService invoiceService;
+    private InvoicesVersion invoicesVersion;
+    private ObjectMapper objectMapper;
+    private CacheManager cacheManager;
 
-    public InvoicesController(InvoiceService invoiceService) {
+    public InvoicesController(InvoiceService invoiceService, InvoicesVersion invoicesVersion, ObjectMapper objectMapper,
+                              CacheManager cacheManager) {
         this.invoiceService = invoiceService;
+        this.invoicesVersion = invoicesVersion;
+        this.objectMapper = objectMapper;
+        this.cacheManager = cacheManager;
     }
 
 
@@ -27,8 +51,55 @@ public class InvoicesController {
     @GetMapping("/invoices")
     //@RequestMapping(value = "/invoices",method = RequestMethod.GET)
     //@ResponseBody // not needed since @RestController is @Controller + @ResponseBody
-    public List<Invoice> invoices(){
-        return invoiceService.findAll();
+    public List<Invoice> invoices(@RequestParam(name = "user_id", required = false) String userId,
+                                  @RequestParam(required = false) UUID after,
+                                  @RequestParam(required = false) @Min(1) @Max(1000) Integer limit,
+                                  WebRequest request){
+        // unchanged since the client's ETag: 304 without querying or serializing anything,
+        // weak: the bytes differ per encoding, and Tomcat does not gzip responses with a strong ETag
+        if (request.checkNotModified("W/\"" + invoicesVersion.current() + "\"")) {
+            return null;
+        }
+        // GET http://localhost:8080/invoices?user_id=... pages through the invoices of one user
+        if (userId != null) {
+            return invoiceService.findByUserId(userId, after, limit != null ? limit : DEFAULT_PAGE_SIZE);
+        }
+        // no paging parameters: keep the old "everything at once" behaviour
+        if (after == null && limit == null) {
+            return invoiceService.findAll();
+        }
+        return invoiceService.findPage(after, limit != null ? limit : DEFAULT_PAGE_SIZE);
+    }
+
+    // GET http://localhost:8080/invoices/stream writes the rows while they are read from the database
+    @GetMapping(value = "/invoices/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamInvoices(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            invoiceService.streamAll(invoice -> {
+                try {
+                    generator.writeObject(invoice);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    // GET http://localhost:8080/invoices/cache-stats shows what invoices.cache.spec=...,recordStats records
+    @GetMapping("/invoices/cache-stats")
+    public Map<String, Object> cacheStats(){
+        Cache<?, ?> cache = (Cache<?, ?>) cacheManager.getCache("invoices").getNativeCache();
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        return result;
     }
 
     @PostMapping("/invoices")
@@ -38,5 +109,11 @@ public class InvoicesController {
         return invoiceService.create(userId,amount);
     }
 
+    // POST http://localhost:8080/invoices/batch with a JSON array of invoices, returns their ids in the same order
+    @PostMapping("/invoices/batch")
+    public List<String> createInvoices(@RequestBody @NotEmpty List<@Valid InvoiceDto> invoiceDtos){
+        return invoiceService.createAll(invoiceDtos);
+    }
+
 
 }
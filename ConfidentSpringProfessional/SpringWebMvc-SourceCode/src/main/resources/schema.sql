@@ -5,3 +5,5 @@ create table if not exists invoices
     user_id varchar(255),
     amount int
 );
+
+create index if not exists invoices_user_id_idx on invoices (user_id, id);
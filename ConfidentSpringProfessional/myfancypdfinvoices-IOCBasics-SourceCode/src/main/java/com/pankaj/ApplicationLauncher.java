@@ -14,6 +14,7 @@ public class ApplicationLauncher {
         Context ctx = tomcat.addContext("",null);
         Wrapper servlet = tomcat.addServlet(ctx,"myFirstServlet",new MyFancyPdfInvoicesServlet());
         servlet.setLoadOnStartup(1);
+        servlet.setAsyncSupported(true);
         servlet.addMapping("/*");
         tomcat.start();
     }
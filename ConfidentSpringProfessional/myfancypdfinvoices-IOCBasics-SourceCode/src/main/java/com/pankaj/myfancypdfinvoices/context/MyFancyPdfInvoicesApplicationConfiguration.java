@@ -4,7 +4,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pankaj.ApplicationLauncher;
 import com.pankaj.service.InvoiceService;
 import com.pankaj.service.UserService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.*;
 
 @Configuration
@@ -13,6 +17,7 @@ import org.springframework.context.annotation.*;
 @PropertySource(value = "classpath:/application-${spring.profiles.active}.properties",
         ignoreResourceNotFound = true)
 //@PropertySource("classpath:/someOtherFile.properties")
+@EnableCaching
 public class MyFancyPdfInvoicesApplicationConfiguration {
 
     @Scope(value = ConfigurableBeanFactory.SCOPE_PROTOTYPE)
@@ -21,6 +26,13 @@ public class MyFancyPdfInvoicesApplicationConfiguration {
     }
 
 
+    @Bean
+    public CacheManager cacheManager(@Value("${invoices.cache.spec}") String cacheSpec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager("invoices");
+        cacheManager.setCacheSpecification(cacheSpec);
+        return cacheManager;
+    }
+
     @Bean
     public ObjectMapper objectMapper() {
         return new ObjectMapper();
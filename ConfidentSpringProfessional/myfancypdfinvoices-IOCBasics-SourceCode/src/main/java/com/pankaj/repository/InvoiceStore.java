@@ -0,0 +1,185 @@
+package com.pankaj.repository;
+
+import com.pankaj.model.Invoice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * In-memory invoice store for many concurrent writers.
+ * <p>
+ * Invoices are appended to one of several segments, picked by the writing thread, so writers rarely contend
+ * for the same lock. A segment stores its invoices in fixed size chunks that are never copied or moved, growing
+ * only means adding a chunk. Readers don't lock at all: {@link #findAll()} captures the current size of every
+ * segment and returns a list view of exactly those invoices, later appends don't show up in it.
+ * Invoices are additionally indexed by id and by user id.
+ * <p>
+ * Insertion order is kept per segment (so per writing thread), not across all of them.
+ */
+@Component
+public class InvoiceStore {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final ConcurrentHashMap<String, Invoice> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Queue<Invoice>> byUserId = new ConcurrentHashMap<>();
+
+    /**
+     * @param segments number of segments, rounded up to a power of two. 0 means two per available processor.
+     */
+    public InvoiceStore(@Value("${invoices.store.segments:0}") int segments) {
+        int wanted = segments > 0 ? segments : 2 * Runtime.getRuntime().availableProcessors();
+        int count = wanted == 1 ? 1 : Integer.highestOneBit(wanted - 1) << 1;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment();
+        }
+        this.segmentMask = count - 1;
+    }
+
+    public void add(Invoice invoice) {
+        segmentForCurrentThread().append(Collections.singletonList(invoice));
+        index(invoice);
+    }
+
+    /**
+     * Appends all invoices to the same segment, taking its lock only once.
+     */
+    public void addAll(Collection<Invoice> invoices) {
+        segmentForCurrentThread().append(invoices);
+        invoices.forEach(this::index);
+    }
+
+    public Invoice findById(String id) {
+        return byId.get(id);
+    }
+
+    public List<Invoice> findByUserId(String userId) {
+        Queue<Invoice> invoices = byUserId.get(userId);
+        return invoices == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(invoices));
+    }
+
+    /**
+     * A read-only snapshot of all invoices stored so far, without copying them.
+     */
+    public List<Invoice> findAll() {
+        SegmentSnapshot[] snapshots = new SegmentSnapshot[segments.length];
+        int[] offsets = new int[segments.length];
+        int total = 0;
+        for (int i = 0; i < segments.length; i++) {
+            snapshots[i] = segments[i].snapshot();
+            offsets[i] = total;
+            total += snapshots[i].size;
+        }
+        return new Snapshot(snapshots, offsets, total);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    private void index(Invoice invoice) {
+        byId.put(invoice.getId(), invoice);
+        byUserId.computeIfAbsent(invoice.getUserId(), userId -> new ConcurrentLinkedQueue<>()).add(invoice);
+    }
+
+    private Segment segmentForCurrentThread() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    private static final class Segment {
+        // written under the segment lock, read without it. chunks is always written before size,
+        // so a reader that has read size sees all chunks (and invoices) up to it.
+        private volatile Invoice[][] chunks = new Invoice[4][];
+        private volatile int size;
+
+        synchronized void append(Collection<Invoice> invoices) {
+            int newSize = size;
+            Invoice[][] directory = chunks;
+            for (Invoice invoice : invoices) {
+                int chunk = newSize >>> CHUNK_SHIFT;
+                if (chunk == directory.length) {
+                    directory = Arrays.copyOf(directory, directory.length * 2);
+                    chunks = directory;
+                }
+                if (directory[chunk] == null) {
+                    directory[chunk] = new Invoice[CHUNK_SIZE];
+                }
+                directory[chunk][newSize & CHUNK_MASK] = invoice;
+                newSize++;
+            }
+            size = newSize;
+        }
+
+        SegmentSnapshot snapshot() {
+            int currentSize = size;
+            return new SegmentSnapshot(chunks, currentSize);
+        }
+    }
+
+    private static final class SegmentSnapshot {
+        private final Invoice[][] chunks;
+        private final int size;
+
+        SegmentSnapshot(Invoice[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        Invoice get(int index) {
+            return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+        }
+    }
+
+    private static final class Snapshot extends AbstractList<Invoice> implements RandomAccess {
+        private final SegmentSnapshot[] segments;
+        private final int[] offsets;
+        private final int size;
+
+        Snapshot(SegmentSnapshot[] segments, int[] offsets, int size) {
+            this.segments = segments;
+            this.offsets = offsets;
+            this.size = size;
+        }
+
+        @Override
+        public Invoice get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            int segment = Arrays.binarySearch(offsets, index);
+            if (segment < 0) {
+                segment = -segment - 2;
+            }
+            // skip empty segments that share their offset with the next one
+            while (index - offsets[segment] >= segments[segment].size) {
+                segment++;
+            }
+            return segments[segment].get(index - offsets[segment]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -2,39 +2,50 @@ package com.pankaj.service;
 
 import com.pankaj.model.Invoice;
 import com.pankaj.model.User;
+import com.pankaj.repository.InvoiceStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Set;
 
 @Component
 public class InvoiceService {
-    private final UserService userService;
+    private final UserLookup userLookup;
     private final String cdnUrl;
-    List<Invoice> invoices = new CopyOnWriteArrayList<>();
+    private final InvoiceStore invoices;
 
    // @Autowired // optional in newer spring evrsion as Component scan can detect
-    public InvoiceService(UserService userService,@Value("${cdn.url}") String cdnUrl) {
+    public InvoiceService(UserLookup userLookup,@Value("${cdn.url}") String cdnUrl, InvoiceStore invoices) {
 
-        this.userService = userService;
+        this.userLookup = userLookup;
         this.cdnUrl = cdnUrl;
+        this.invoices = invoices;
     }
 
-    @PostConstruct
-    public void init(){
-        System.out.println("Fetching PDF templates from S3...");
-        //TODO download from S3 and save locally
-    }
+    // a snapshot, so the cached list does not change under its readers
+    @Cacheable("invoices")
     public List<Invoice> findAll(){
-        return invoices;
+        return invoices.findAll();
+    }
+
+    public Invoice findById(String id){
+        return invoices.findById(id);
     }
 
+    public List<Invoice> findByUserId(String userId){
+        return invoices.findByUserId(userId);
+    }
+
+    @CacheEvict(value = "invoices", allEntries = true)
     public Invoice create(String userId, Integer amount) {
-        User user = userService.findById(userId);
+        User user = userLookup.findById(userId);
         if(user==null)
             throw new IllegalStateException();
         // TODO real pdf creation and storing it on network server
@@ -43,9 +54,25 @@ public class InvoiceService {
        return invoice;
     }
 
-    @PreDestroy
-    public void shutDown(){
-        System.out.println("Deleting downloaded templates ...");
-        //TODO : Actual deletion of pdfs
+    /**
+     * Creates one invoice per draft (only user_id and amount are used). All users are
+     * looked up with a single call, if one of them does not exist no invoice is created.
+     */
+    @CacheEvict(value = "invoices", allEntries = true)
+    public List<Invoice> createAll(List<Invoice> drafts) {
+        Set<String> userIds = new HashSet<>();
+        for (Invoice draft : drafts) {
+            userIds.add(draft.getUserId());
+        }
+        Map<String, User> users = userLookup.findByIds(userIds);
+        if (users.size() != userIds.size())
+            throw new IllegalStateException();
+
+        List<Invoice> created = new ArrayList<>(drafts.size());
+        for (Invoice draft : drafts) {
+            created.add(new Invoice(draft.getUserId(), draft.getAmount(), cdnUrl + "/images/default/sample.pdf"));
+        }
+        invoices.addAll(created);
+        return created;
     }
 }
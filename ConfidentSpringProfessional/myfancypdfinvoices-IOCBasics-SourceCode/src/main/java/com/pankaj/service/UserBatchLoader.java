@@ -0,0 +1,141 @@
+package com.pankaj.service;
+
+import com.pankaj.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects single user lookups for up to {@code users.batch.window-ms} (or until {@code users.batch.max-size}
+ * different ids are waiting) and resolves them with one {@link UserService#findByIds} call, so no call gets more
+ * than {@code users.batch.max-size} ids. At most {@code users.batch.concurrency} calls run at once and at most
+ * {@code users.batch.queue-capacity} batches wait for one; beyond that the batch fails with a
+ * {@link RejectedExecutionException}.
+ */
+@Component
+public class UserBatchLoader {
+    private final UserService userService;
+    private final long windowMs;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("user-batch-scheduler-"));
+    private final ThreadPoolExecutor lookupExecutor;
+
+    private final Object lock = new Object();
+    private Map<String, CompletableFuture<Optional<User>>> pending = new HashMap<>();
+    // the window of the pending batch, cancelled when the batch goes out early because it is full
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean shutDown;
+
+    public UserBatchLoader(UserService userService,
+                           @Value("${users.batch.window-ms:5}") long windowMs,
+                           @Value("${users.batch.max-size:100}") int maxBatchSize,
+                           @Value("${users.batch.concurrency:4}") int concurrency,
+                           @Value("${users.batch.queue-capacity:64}") int queueCapacity) {
+        this.userService = userService;
+        this.windowMs = windowMs;
+        this.maxBatchSize = maxBatchSize;
+        this.lookupExecutor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), daemonThreads("user-batch-lookup-"));
+        this.lookupExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Completes with the user, or with an empty Optional if there is no user with that id. After
+     * {@link #shutDown()} it fails with a {@link RejectedExecutionException}.
+     */
+    public CompletableFuture<Optional<User>> load(String id) {
+        synchronized (lock) {
+            if (shutDown) {
+                CompletableFuture<Optional<User>> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(new RejectedExecutionException("UserBatchLoader is shut down"));
+                return rejected;
+            }
+            CompletableFuture<Optional<User>> future = pending.get(id);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(id, future);
+            if (pending.size() >= maxBatchSize) {
+                lookUp(takePending());
+            } else if (pending.size() == 1) {
+                Map<String, CompletableFuture<Optional<User>>> batch = pending;
+                scheduledFlush = scheduler.schedule(() -> flush(batch), windowMs, TimeUnit.MILLISECONDS);
+            }
+            return future;
+        }
+    }
+
+    private void flush(Map<String, CompletableFuture<Optional<User>>> batch) {
+        synchronized (lock) {
+            // the batch went out already because it was full, and the cancel came too late
+            if (pending != batch || shutDown) {
+                return;
+            }
+            lookUp(takePending());
+        }
+    }
+
+    private Map<String, CompletableFuture<Optional<User>>> takePending() {
+        Map<String, CompletableFuture<Optional<User>>> batch = pending;
+        pending = new HashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void lookUp(Map<String, CompletableFuture<Optional<User>>> batch) {
+        // the round trip runs on its own thread, so the next batch is not held up by this one
+        try {
+            lookupExecutor.execute(() -> {
+                try {
+                    Map<String, User> users = userService.findByIds(batch.keySet());
+                    batch.forEach((id, future) -> future.complete(Optional.ofNullable(users.get(id))));
+                } catch (RuntimeException e) {
+                    batch.values().forEach(future -> future.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Fails the lookups that are still waiting for their window, those already sent to the {@link UserService}
+     * complete normally.
+     */
+    @PreDestroy
+    public void shutDown() {
+        Map<String, CompletableFuture<Optional<User>>> batch;
+        synchronized (lock) {
+            shutDown = true;
+            batch = takePending();
+        }
+        RejectedExecutionException rejected = new RejectedExecutionException("UserBatchLoader is shut down");
+        batch.values().forEach(future -> future.completeExceptionally(rejected));
+        scheduler.shutdownNow();
+        lookupExecutor.shutdown();
+    }
+
+    private static CustomizableThreadFactory daemonThreads(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
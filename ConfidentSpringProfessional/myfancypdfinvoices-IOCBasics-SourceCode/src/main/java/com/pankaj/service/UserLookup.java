@@ -0,0 +1,115 @@
+package com.pankaj.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pankaj.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached access to the {@link UserService}.
+ * <p>
+ * Found users are cached for {@code users.cache.expire-after-write-seconds}, unknown ids for the (usually shorter)
+ * {@code users.cache.negative-expire-after-write-seconds}, at most {@code users.cache.maximum-size} ids in total.
+ * Single lookups that miss the cache go through the {@link UserBatchLoader}, so concurrent misses for different users
+ * become one bulk call. {@link #findByIds} resolves all its misses with one bulk call of its own.
+ */
+@Component
+public class UserLookup {
+    private final AsyncLoadingCache<String, Optional<User>> cache;
+
+    public UserLookup(UserService userService, UserBatchLoader userBatchLoader,
+                      @Value("${users.cache.maximum-size:10000}") long maximumSize,
+                      @Value("${users.cache.expire-after-write-seconds:300}") long expireAfterWriteSeconds,
+                      @Value("${users.cache.negative-expire-after-write-seconds:30}") long negativeExpireAfterWriteSeconds) {
+        long foundTtl = TimeUnit.SECONDS.toNanos(expireAfterWriteSeconds);
+        long notFoundTtl = TimeUnit.SECONDS.toNanos(negativeExpireAfterWriteSeconds);
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Optional<User>>() {
+                    @Override
+                    public long expireAfterCreate(String id, Optional<User> user, long currentTime) {
+                        return user.isPresent() ? foundTtl : notFoundTtl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String id, Optional<User> user, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, user, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String id, Optional<User> user, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<String, Optional<User>>() {
+                    @Override
+                    public CompletableFuture<Optional<User>> asyncLoad(String id, Executor executor) {
+                        return userBatchLoader.load(id);
+                    }
+
+                    @Override
+                    public CompletableFuture<Map<String, Optional<User>>> asyncLoadAll(Iterable<? extends String> ids,
+                                                                                      Executor executor) {
+                        Set<String> missing = new HashSet<>();
+                        ids.forEach(missing::add);
+                        Map<String, User> users = userService.findByIds(missing);
+                        Map<String, Optional<User>> result = new HashMap<>();
+                        for (String id : missing) {
+                            result.put(id, Optional.ofNullable(users.get(id)));
+                        }
+                        return CompletableFuture.completedFuture(result);
+                    }
+                });
+    }
+
+    /**
+     * Returns the user, or null if there is no user with that id.
+     */
+    public User findById(String id) {
+        return join(cache.get(id)).orElse(null);
+    }
+
+    /**
+     * Returns the users that exist, keyed by id.
+     */
+    public Map<String, User> findByIds(Collection<String> ids) {
+        Map<String, User> users = new HashMap<>();
+        join(cache.getAll(ids)).forEach((id, user) -> user.ifPresent(u -> users.put(id, u)));
+        return users;
+    }
+
+    /**
+     * Hits, misses and evictions of the user cache since startup.
+     */
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -3,8 +3,15 @@ package com.pankaj.service;
 import com.pankaj.model.User;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Stands in for a remote user directory, every call is a round trip. Use {@link UserLookup},
+ * which caches and batches these calls.
+ */
 @Component
 public class UserService {
     public User findById(String id){
@@ -12,4 +19,15 @@ public class UserService {
         //always "finds" the user, every user has a random name
         return new User(id,randomName);
     }
+
+    /**
+     * Looks up several users in one round trip. Unknown ids are missing from the returned map.
+     */
+    public Map<String, User> findByIds(Collection<String> ids){
+        Map<String, User> users = new HashMap<>();
+        for (String id : ids) {
+            users.put(id, new User(id, UUID.randomUUID().toString()));
+        }
+        return users;
+    }
 }
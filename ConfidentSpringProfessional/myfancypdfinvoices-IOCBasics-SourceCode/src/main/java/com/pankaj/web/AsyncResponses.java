@@ -0,0 +1,197 @@
+package com.pankaj.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the work of a request on a worker thread instead of Tomcat's request thread, so a slow database ties up a
+ * worker but not a container thread. There are {@code invoices.async.threads} workers and at most
+ * {@code invoices.async.queue-capacity} requests waiting for one; beyond that requests get a 503 straight away.
+ * Requests still running after {@code invoices.async.timeout-ms} get a 503 as well.
+ * <p>
+ * The result is encoded by {@link JacksonCodecs} and written with non-blocking output, so a slow client doesn't
+ * hold on to a worker either. Work that fails gets a 500 and is logged, except for a request body Jackson could not
+ * read, which is a 400.
+ */
+@Component
+public class AsyncResponses {
+
+    private static final Log log = LogFactory.getLog(AsyncResponses.class);
+
+    private final JacksonCodecs codecs;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+
+    public AsyncResponses(JacksonCodecs codecs,
+                          @Value("${invoices.async.threads:32}") int threads,
+                          @Value("${invoices.async.queue-capacity:1000}") int queueCapacity,
+                          @Value("${invoices.async.timeout-ms:30000}") long timeoutMs) {
+        this.codecs = codecs;
+        this.timeoutMs = timeoutMs;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("invoices-async-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+    }
+
+    /**
+     * Starts async processing of the request, runs {@code work} on a worker and sends what it returns. The
+     * request's parameters and body should be read before calling this, on the request thread.
+     */
+    public void execute(HttpServletRequest req, HttpServletResponse resp, Callable<?> work) {
+        AsyncContext asyncContext = req.startAsync(req, resp);
+        asyncContext.setTimeout(timeoutMs);
+        AtomicBoolean done = new AtomicBoolean();
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                fail(asyncContext, done, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                log.warn("Async request failed: " + describe(req), event.getThrowable());
+                fail(asyncContext, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+                done.set(true);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        try {
+            executor.execute(() -> respond(asyncContext, done, work));
+        } catch (RejectedExecutionException e) {
+            resp.setHeader("Retry-After", "1");
+            fail(asyncContext, done, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private void respond(AsyncContext asyncContext, AtomicBoolean done, Callable<?> work) {
+        if (done.get()) {
+            // timed out while waiting for a worker
+            return;
+        }
+        HttpServletRequest req = (HttpServletRequest) asyncContext.getRequest();
+        Object result;
+        try {
+            result = work.call();
+        } catch (JsonProcessingException e) {
+            // work that still reads the request body itself
+            log.debug("Unreadable request body: " + describe(req), e);
+            fail(asyncContext, done, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        } catch (Exception e) {
+            log.error("Request failed: " + describe(req), e);
+            fail(asyncContext, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        byte[] body;
+        try {
+            body = codecs.encode(req, (HttpServletResponse) asyncContext.getResponse(), result);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not encode the response: " + describe(req), e);
+            fail(asyncContext, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if (done.get()) {
+            return;
+        }
+        try {
+            ServletOutputStream out = asyncContext.getResponse().getOutputStream();
+            out.setWriteListener(new BodyWriter(asyncContext, done, out, body));
+        } catch (IOException | IllegalStateException e) {
+            log.error("Could not start writing the response: " + describe(req), e);
+            fail(asyncContext, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static String describe(HttpServletRequest req) {
+        return req.getMethod() + " " + req.getRequestURI();
+    }
+
+    private static void fail(AsyncContext asyncContext, AtomicBoolean done, int status) {
+        if (!done.compareAndSet(false, true)) {
+            return;
+        }
+        HttpServletResponse resp = (HttpServletResponse) asyncContext.getResponse();
+        if (!resp.isCommitted()) {
+            resp.resetBuffer();
+            resp.setStatus(status);
+        }
+        asyncContext.complete();
+    }
+
+    @PreDestroy
+    public void shutDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes the body whenever the connection can take more, then completes the request. Tomcat calls
+     * {@link #onWritePossible()} once after the listener is set and again each time a write that did not go out
+     * in full has been flushed.
+     */
+    private static class BodyWriter implements WriteListener {
+        private static final int CHUNK_SIZE = 8192;
+
+        private final AsyncContext asyncContext;
+        private final AtomicBoolean done;
+        private final ServletOutputStream out;
+        private final byte[] body;
+        private int offset;
+
+        BodyWriter(AsyncContext asyncContext, AtomicBoolean done, ServletOutputStream out, byte[] body) {
+            this.asyncContext = asyncContext;
+            this.done = done;
+            this.out = out;
+            this.body = body;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (offset < body.length && out.isReady()) {
+                int length = Math.min(CHUNK_SIZE, body.length - offset);
+                out.write(body, offset, length);
+                offset += length;
+            }
+            if (offset == body.length && out.isReady() && done.compareAndSet(false, true)) {
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // the client went away, there is no one left to tell
+            if (done.compareAndSet(false, true)) {
+                asyncContext.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.pankaj.web;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes request and response bodies as JSON, Smile or CBOR, picked from the Accept and
+ * Content-Type headers. Responses of at least {@code invoices.compression.min-size} bytes are gzipped
+ * for clients that accept it.
+ */
+@Component
+public class JacksonCodecs {
+
+    public static final String JSON = "application/json";
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String CBOR = "application/cbor";
+
+    // JSON first: it is what clients get when they don't ask for anything in particular
+    private final Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+    private final int compressionMinSize;
+
+    public JacksonCodecs(ObjectMapper objectMapper, @Value("${invoices.compression.min-size:2048}") int compressionMinSize) {
+        this.mappers.put(JSON, objectMapper);
+        this.mappers.put(SMILE, new ObjectMapper(new SmileFactory()));
+        this.mappers.put(CBOR, new ObjectMapper(new CBORFactory()));
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    public <T> T read(HttpServletRequest req, TypeReference<T> type) throws IOException {
+        ObjectMapper mapper = mappers.get(mediaType(req.getContentType()));
+        return (mapper != null ? mapper : mappers.get(JSON)).readValue(req.getInputStream(), type);
+    }
+
+    public void write(HttpServletRequest req, HttpServletResponse resp, Object body) throws IOException {
+        resp.getOutputStream().write(encode(req, resp, body));
+    }
+
+    /**
+     * Sets the Content-Type, Vary and Content-Encoding or Content-Length headers for the negotiated format and
+     * returns the bytes to send, already gzipped where that applies. Nothing is written to the body, which lets
+     * async requests send the bytes with non-blocking I/O.
+     */
+    public byte[] encode(HttpServletRequest req, HttpServletResponse resp, Object body) throws IOException {
+        String mediaType = negotiate(req.getHeader("Accept"));
+        byte[] bytes = mappers.get(mediaType).writeValueAsBytes(body);
+
+        resp.setContentType(JSON.equals(mediaType) ? JSON + ";charset=UTF-8" : mediaType);
+        resp.setHeader("Vary", "Accept, Accept-Encoding");
+        if (bytes.length >= compressionMinSize && acceptsGzip(req.getHeader("Accept-Encoding"))) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+            try (OutputStream out = new GZIPOutputStream(compressed, 8192)) {
+                out.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.setContentLength(bytes.length);
+        return bytes;
+    }
+
+    /**
+     * The supported media type with the highest q-value in the Accept header, types with q=0 are not acceptable.
+     * Wildcards and unsupported types fall back to JSON, the only format there was before.
+     */
+    String negotiate(String accept) {
+        if (accept == null) {
+            return JSON;
+        }
+        String best = JSON;
+        double bestQuality = -1;
+        for (String range : accept.split(",")) {
+            String mediaType = mediaType(range);
+            double quality = quality(range);
+            if (mappers.containsKey(mediaType) && quality > 0 && quality > bestQuality) {
+                best = mediaType;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Whether gzip has a q-value above 0 in the Accept-Encoding header. A {@code *} only counts when gzip is not
+     * listed itself, so {@code gzip;q=0, *} does not accept it.
+     */
+    boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double wildcardQuality = 0;
+        for (String coding : acceptEncoding.split(",")) {
+            String name = mediaType(coding);
+            if ("gzip".equals(name) || "x-gzip".equals(name)) {
+                return quality(coding) > 0;
+            }
+            if ("*".equals(name)) {
+                wildcardQuality = quality(coding);
+            }
+        }
+        return wildcardQuality > 0;
+    }
+
+    private static String mediaType(String headerElement) {
+        if (headerElement == null) {
+            return null;
+        }
+        int parameters = headerElement.indexOf(';');
+        return (parameters < 0 ? headerElement : headerElement.substring(0, parameters)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static double quality(String headerElement) {
+        for (String parameter : headerElement.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
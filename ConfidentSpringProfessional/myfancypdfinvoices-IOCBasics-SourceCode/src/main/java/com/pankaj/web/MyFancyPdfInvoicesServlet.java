@@ -1,10 +1,15 @@
 package com.pankaj.web;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.pankaj.model.Invoice;
 import com.pankaj.myfancypdfinvoices.context.MyFancyPdfInvoicesApplicationConfiguration;
 import com.pankaj.service.InvoiceService;
+import com.pankaj.service.UserLookup;
 import com.pankaj.service.UserService;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 
@@ -13,12 +18,19 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class MyFancyPdfInvoicesServlet extends HttpServlet {
     private UserService userService;
-    private ObjectMapper objectMapper;
+    private JacksonCodecs codecs;
     private InvoiceService invoiceService;
+    private AsyncResponses asyncResponses;
+    private CacheManager cacheManager;
+    private UserLookup userLookup;
+    private boolean async;
 
     @Override
     public void init() throws ServletException {
@@ -26,8 +38,13 @@ public class MyFancyPdfInvoicesServlet extends HttpServlet {
                 new AnnotationConfigApplicationContext(MyFancyPdfInvoicesApplicationConfiguration.class);
         ctx.registerShutdownHook();
         this.userService = ctx.getBean(UserService.class);
-        this.objectMapper = ctx.getBean(ObjectMapper.class);
+        this.codecs = ctx.getBean(JacksonCodecs.class);
         this.invoiceService = ctx.getBean(InvoiceService.class);
+        this.asyncResponses = ctx.getBean(AsyncResponses.class);
+        this.cacheManager = ctx.getBean(CacheManager.class);
+        this.userLookup = ctx.getBean(UserLookup.class);
+        // async needs the servlet to be registered with asyncSupported
+        this.async = ctx.getEnvironment().getProperty("invoices.async.enabled", Boolean.class, false);
     }
 
     @Override
@@ -42,9 +59,15 @@ public class MyFancyPdfInvoicesServlet extends HttpServlet {
                     "</body>\n" +
                     "</html>");
         }else if(req.getRequestURI().equalsIgnoreCase("/invoices")){
-            resp.setContentType("application/json;charset=UTF-8");
-            List<Invoice> invoices = invoiceService.findAll();
-            resp.getWriter().print(objectMapper.writeValueAsString(invoices));
+            String userId = req.getParameter("user_id");
+            respond(req, resp, () -> userId != null ? invoiceService.findByUserId(userId) : invoiceService.findAll());
+        }else if(req.getRequestURI().equalsIgnoreCase("/cache/stats")){
+            // what the recordStats of invoices.cache.spec and of the user cache have counted so far
+            Map<String, Object> stats = new LinkedHashMap<>();
+            Cache<?, ?> invoicesCache = (Cache<?, ?>) cacheManager.getCache("invoices").getNativeCache();
+            stats.put("invoices", toMap(invoicesCache.stats()));
+            stats.put("users", toMap(userLookup.stats()));
+            codecs.write(req, resp, stats);
         }
 
     }
@@ -55,13 +78,74 @@ public class MyFancyPdfInvoicesServlet extends HttpServlet {
             String userId = req.getParameter("user_id");
             Integer amount = Integer.valueOf(req.getParameter("amount"));
 
-            Invoice invoice = invoiceService.create(userId,amount);
-            resp.setContentType("application/json;charset=UTF-8");
-            String json = objectMapper.writeValueAsString(invoice);
-            resp.getWriter().print(json);
+            respond(req, resp, () -> invoiceService.create(userId,amount));
+        }else if(req.getRequestURI().equalsIgnoreCase("/invoices/batch")){
+            // body: [{"user_id":"someUserId","amount":50}, ...] as JSON, Smile or CBOR, read and checked here,
+            // so a bad body is a 400 also in async mode
+            List<Invoice> drafts;
+            try {
+                drafts = codecs.read(req, new TypeReference<List<Invoice>>() {});
+            } catch (JsonProcessingException e) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Not a list of invoices: " + e.getOriginalMessage());
+                return;
+            }
+            String invalid = validate(drafts);
+            if (invalid != null) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, invalid);
+                return;
+            }
+            respond(req, resp, () -> invoiceService.createAll(drafts));
         }else{
             resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
         }
 
     }
+
+    /**
+     * The same rules as the InvoiceDto of the Spring MVC version: at least one invoice, each with a user_id and an
+     * amount from 10 to 50. Returns what is wrong, or null.
+     */
+    static String validate(List<Invoice> drafts) {
+        if (drafts == null || drafts.isEmpty()) {
+            return "No invoices";
+        }
+        for (int i = 0; i < drafts.size(); i++) {
+            Invoice draft = drafts.get(i);
+            if (draft == null || draft.getUserId() == null || draft.getUserId().trim().isEmpty()) {
+                return "Invoice " + i + ": user_id is missing";
+            }
+            if (draft.getAmount() == null || draft.getAmount() < 10 || draft.getAmount() > 50) {
+                return "Invoice " + i + ": amount must be between 10 and 50";
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> toMap(CacheStats cacheStats) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("hitCount", cacheStats.hitCount());
+        map.put("missCount", cacheStats.missCount());
+        map.put("hitRate", cacheStats.hitRate());
+        map.put("evictionCount", cacheStats.evictionCount());
+        return map;
+    }
+
+    /**
+     * Sends what {@code work} returns. In async mode the work runs on one of the {@link AsyncResponses} workers
+     * and this returns right away, freeing the request thread.
+     */
+    private void respond(HttpServletRequest req, HttpServletResponse resp, Callable<?> work)
+            throws ServletException, IOException {
+        if (async && req.isAsyncSupported()) {
+            asyncResponses.execute(req, resp, work);
+            return;
+        }
+        try {
+            codecs.write(req, resp, work.call());
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServletException(e);
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package com.pankaj.repository;
+
+import com.pankaj.model.Invoice;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvoiceStoreTests {
+
+    private static final int INVOICES_PER_WRITER = 50_000;
+
+    @Test
+    void indexesByIdAndUserId() {
+        InvoiceStore store = new InvoiceStore(4);
+        Invoice first = new Invoice("someUserId", 50, "pdf");
+        Invoice second = new Invoice("someOtherUserId", 20, "pdf");
+        Invoice third = new Invoice("someUserId", 30, "pdf");
+
+        store.add(first);
+        store.addAll(Arrays.asList(second, third));
+
+        assertSame(second, store.findById(second.getId()));
+        assertEquals(Arrays.asList(first, third), store.findByUserId("someUserId"));
+        assertTrue(store.findByUserId("unknown").isEmpty());
+        assertEquals(Arrays.asList(first, second, third), store.findAll());
+    }
+
+    @Test
+    void snapshotsDoNotSeeLaterInvoices() {
+        InvoiceStore store = new InvoiceStore(1);
+        List<Invoice> added = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Invoice invoice = new Invoice("user" + (i % 7), 10, "pdf");
+            added.add(invoice);
+            store.add(invoice);
+        }
+
+        List<Invoice> snapshot = store.findAll();
+        store.add(new Invoice("late", 10, "pdf"));
+
+        assertEquals(added, snapshot);
+        assertEquals(3001, store.size());
+    }
+
+    @ParameterizedTest(name = "{0} writer threads")
+    @ValueSource(ints = {1, 8, 32})
+    void concurrentWriters(int writers) throws Exception {
+        InvoiceStore store = new InvoiceStore(0);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        // a reader iterating snapshots while the writers are busy must never see a gap, nor a snapshot shrink
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            int previousSize = 0;
+            while (writing.get()) {
+                List<Invoice> snapshot = store.findAll();
+                assertTrue(snapshot.size() >= previousSize, "snapshot shrank from " + previousSize);
+                for (Invoice invoice : snapshot) {
+                    assertNotNull(invoice);
+                }
+                previousSize = snapshot.size();
+            }
+            return null;
+        });
+        List<Future<List<Invoice>>> writerFutures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            String userId = "user" + w;
+            writerFutures.add(executor.submit(() -> {
+                List<Invoice> written = new ArrayList<>(INVOICES_PER_WRITER);
+                start.await();
+                for (int i = 0; i < INVOICES_PER_WRITER; i++) {
+                    Invoice invoice = new Invoice(userId, 10, "pdf");
+                    store.add(invoice);
+                    written.add(invoice);
+                }
+                return written;
+            }));
+        }
+
+        start.countDown();
+        List<List<Invoice>> written = new ArrayList<>();
+        for (Future<List<Invoice>> future : writerFutures) {
+            written.add(future.get(2, TimeUnit.MINUTES));
+        }
+        writing.set(false);
+        reader.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        int total = writers * INVOICES_PER_WRITER;
+        assertEquals(total, store.size());
+        List<Invoice> all = store.findAll();
+        assertEquals(total, all.size());
+        for (int w = 0; w < writers; w++) {
+            // one writer per user, so the user's invoices are in the order that writer added them
+            assertEquals(written.get(w), store.findByUserId("user" + w));
+        }
+        Invoice last = all.get(total - 1);
+        assertSame(last, store.findById(last.getId()));
+    }
+}
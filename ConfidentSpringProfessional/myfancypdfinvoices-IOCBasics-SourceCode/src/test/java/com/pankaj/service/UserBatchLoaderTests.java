@@ -0,0 +1,149 @@
+package com.pankaj.service;
+
+import com.pankaj.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserBatchLoaderTests {
+
+    private final RecordingUserService userService = new RecordingUserService();
+    private UserBatchLoader loader;
+
+    @AfterEach
+    void shutDown() {
+        loader.shutDown();
+    }
+
+    @Test
+    void coalescesLookupsWithinTheWindow() throws Exception {
+        loader = new UserBatchLoader(userService, 50, 100, 4, 64);
+
+        CompletableFuture<Optional<User>> first = loader.load("a");
+        CompletableFuture<Optional<User>> second = loader.load("b");
+        assertSame(first, loader.load("a"));
+
+        assertEquals("a", first.get(5, TimeUnit.SECONDS).get().getId());
+        assertEquals("b", second.get(5, TimeUnit.SECONDS).get().getId());
+        assertEquals(Arrays.asList(new HashSet<>(Arrays.asList("a", "b"))), userService.calls());
+    }
+
+    @Test
+    void flushesAFullBatchWithoutWaitingForTheWindow() throws Exception {
+        loader = new UserBatchLoader(userService, 60_000, 3, 4, 64);
+
+        List<CompletableFuture<Optional<User>>> futures = new ArrayList<>();
+        for (String id : Arrays.asList("a", "b", "c")) {
+            futures.add(loader.load(id));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(1, userService.calls().size());
+    }
+
+    @Test
+    void aFullBatchDoesNotCutTheNextOneShort() throws Exception {
+        loader = new UserBatchLoader(userService, 500, 2, 4, 64);
+        loader.load("a");
+        loader.load("b").get(5, TimeUnit.SECONDS);
+
+        // the window of the full batch would have ended 200ms after this, the new batch gets a window of its own
+        Thread.sleep(300);
+        CompletableFuture<Optional<User>> next = loader.load("c");
+        Thread.sleep(300);
+        assertFalse(next.isDone());
+
+        assertEquals("c", next.get(5, TimeUnit.SECONDS).get().getId());
+    }
+
+    @Test
+    void neverAsksForMoreThanMaxSizeUsersAtOnce() throws Exception {
+        loader = new UserBatchLoader(userService, 50, 2, 4, 64);
+
+        List<CompletableFuture<Optional<User>>> futures = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            futures.add(loader.load("user" + i));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        Set<String> requested = new HashSet<>();
+        for (Set<String> call : userService.calls()) {
+            assertTrue(call.size() <= 2, "batch of " + call.size());
+            requested.addAll(call);
+        }
+        assertEquals(7, requested.size());
+    }
+
+    @Test
+    void shutDownFailsTheWaitingLookups() {
+        loader = new UserBatchLoader(userService, 60_000, 100, 4, 64);
+        CompletableFuture<Optional<User>> waiting = loader.load("a");
+
+        loader.shutDown();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        assertTrue(loader.load("b").isCompletedExceptionally());
+        assertTrue(userService.calls().isEmpty());
+    }
+
+    @Test
+    void rejectsBatchesBeyondTheQueueCapacity() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        UserService blockingUserService = new UserService() {
+            @Override
+            public Map<String, User> findByIds(Collection<String> ids) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.findByIds(ids);
+            }
+        };
+        loader = new UserBatchLoader(blockingUserService, 60_000, 1, 1, 1);
+
+        CompletableFuture<Optional<User>> running = loader.load("a");
+        CompletableFuture<Optional<User>> queued = loader.load("b");
+        CompletableFuture<Optional<User>> rejected = loader.load("c");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        release.countDown();
+        assertEquals("a", running.get(5, TimeUnit.SECONDS).get().getId());
+        assertEquals("b", queued.get(5, TimeUnit.SECONDS).get().getId());
+    }
+
+    private static class RecordingUserService extends UserService {
+        private final List<Set<String>> calls = new ArrayList<>();
+
+        @Override
+        public synchronized Map<String, User> findByIds(Collection<String> ids) {
+            calls.add(new HashSet<>(ids));
+            return super.findByIds(ids);
+        }
+
+        synchronized List<Set<String>> calls() {
+            return new ArrayList<>(calls);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.pankaj.web;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncResponsesTests {
+
+    private static final long SLOW_MS = 200;
+
+    @TempDir
+    Path baseDir;
+
+    private Tomcat tomcat;
+    private AsyncResponses asyncResponses;
+
+    @BeforeEach
+    void startTomcat() throws Exception {
+        // gzip off, so each 64KB response takes several non-blocking writes
+        asyncResponses = new AsyncResponses(new JacksonCodecs(new ObjectMapper(), Integer.MAX_VALUE), 64, 8, 5000);
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        tomcat.setPort(0);
+        // two container threads for 64 concurrent slow requests
+        tomcat.getConnector().setProperty("maxThreads", "2");
+        StandardContext ctx = (StandardContext) tomcat.addContext("", null);
+        // the leak checks need reflective access to JDK internals, which newer JDKs refuse
+        ctx.setClearReferencesObjectStreamClassCaches(false);
+        ctx.setClearReferencesThreadLocals(false);
+        ctx.setClearReferencesRmiTargets(false);
+        Wrapper servlet = Tomcat.addServlet(ctx, "slow", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+                String failure = req.getParameter("fail");
+                if (failure != null) {
+                    asyncResponses.execute(req, resp, () -> {
+                        if ("parse".equals(failure)) {
+                            throw new JsonParseException(null, "not JSON");
+                        }
+                        throw new IllegalStateException("broken");
+                    });
+                    return;
+                }
+                int size = Integer.parseInt(req.getParameter("size"));
+                asyncResponses.execute(req, resp, () -> {
+                    Thread.sleep(SLOW_MS);
+                    return Collections.nCopies(size, "x");
+                });
+            }
+        });
+        servlet.setAsyncSupported(true);
+        servlet.addMapping("/*");
+        tomcat.start();
+    }
+
+    @AfterEach
+    void stopTomcat() throws Exception {
+        asyncResponses.shutDown();
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @Test
+    void slowRequestsDoNotPinContainerThreads() throws Exception {
+        int requests = 64;
+        ExecutorService clients = Executors.newFixedThreadPool(requests);
+        try {
+            long start = System.nanoTime();
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                responses.add(clients.submit(() -> get("/?size=16000", 200)));
+            }
+            for (Future<String> response : responses) {
+                assertEquals(16000 * 4 + 1, response.get().length());
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            // on the two container threads alone this would take requests / 2 * SLOW_MS = 6.4s
+            assertTrue(elapsedMs < requests / 2 * SLOW_MS / 2, "took " + elapsedMs + "ms");
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsRequestsWhenTheQueueIsFull() throws Exception {
+        asyncResponses.shutDown();
+        // one worker, no waiting room: the second concurrent request is turned away
+        asyncResponses = new AsyncResponses(new JacksonCodecs(new ObjectMapper(), 2048), 1, 1, 5000);
+        ExecutorService clients = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                statuses.add(clients.submit(() -> status("/?size=1")));
+            }
+            List<Integer> codes = new ArrayList<>();
+            for (Future<Integer> status : statuses) {
+                codes.add(status.get());
+            }
+            assertTrue(codes.contains(200), codes.toString());
+            assertTrue(codes.contains(503), codes.toString());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void mapsFailedWork() throws Exception {
+        assertEquals(400, status("/?fail=parse"));
+        assertEquals(500, status("/?fail=state"));
+    }
+
+    private String get(String path, int expectedStatus) throws IOException {
+        HttpURLConnection connection = open(path);
+        assertEquals(expectedStatus, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            in.transferTo(body);
+            return body.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private int status(String path) throws IOException {
+        HttpURLConnection connection = open(path);
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        URL url = new URL("http://localhost:" + tomcat.getConnector().getLocalPort() + path);
+        return (HttpURLConnection) url.openConnection();
+    }
+}
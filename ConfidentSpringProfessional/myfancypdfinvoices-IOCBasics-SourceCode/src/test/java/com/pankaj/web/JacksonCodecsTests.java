@@ -0,0 +1,47 @@
+package com.pankaj.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JacksonCodecsTests {
+
+    private final JacksonCodecs codecs = new JacksonCodecs(new ObjectMapper(), 2048);
+
+    @Test
+    void picksTheSupportedTypeWithTheHighestQuality() {
+        assertEquals(JacksonCodecs.JSON, codecs.negotiate(null));
+        assertEquals(JacksonCodecs.JSON, codecs.negotiate("*/*"));
+        assertEquals(JacksonCodecs.SMILE, codecs.negotiate("application/x-jackson-smile"));
+        assertEquals(JacksonCodecs.CBOR, codecs.negotiate("application/json;q=0.5, application/cbor"));
+        assertEquals(JacksonCodecs.JSON, codecs.negotiate("application/cbor;q=0.2, application/json;q=0.9"));
+        assertEquals(JacksonCodecs.SMILE, codecs.negotiate("text/html, application/x-jackson-smile;q=0.1"));
+    }
+
+    @Test
+    void fallsBackToJsonForUnsupportedTypes() {
+        assertEquals(JacksonCodecs.JSON, codecs.negotiate("application/xml"));
+    }
+
+    @Test
+    void skipsTypesWithQualityZero() {
+        assertEquals(JacksonCodecs.JSON, codecs.negotiate("application/cbor;q=0"));
+        assertEquals(JacksonCodecs.SMILE, codecs.negotiate("application/json;q=0, application/x-jackson-smile;q=0.1"));
+    }
+
+    @Test
+    void gzipsOnlyWhenTheClientAcceptsIt() {
+        assertTrue(codecs.acceptsGzip("gzip, deflate, br"));
+        assertTrue(codecs.acceptsGzip("deflate, *;q=0.1"));
+        assertFalse(codecs.acceptsGzip(null));
+        assertFalse(codecs.acceptsGzip("deflate"));
+        assertFalse(codecs.acceptsGzip("gzip;q=0, deflate"));
+        assertFalse(codecs.acceptsGzip("gzip;q=0, *"));
+        assertFalse(codecs.acceptsGzip("*, gzip;q=0"));
+        assertFalse(codecs.acceptsGzip("*;q=0"));
+        assertTrue(codecs.acceptsGzip("*;q=0, gzip"));
+    }
+}
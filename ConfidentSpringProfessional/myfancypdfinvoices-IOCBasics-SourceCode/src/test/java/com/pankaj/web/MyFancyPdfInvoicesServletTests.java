@@ -0,0 +1,30 @@
+package com.pankaj.web;
+
+import com.pankaj.model.Invoice;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MyFancyPdfInvoicesServletTests {
+
+    @Test
+    void acceptsValidDrafts() {
+        assertNull(MyFancyPdfInvoicesServlet.validate(Arrays.asList(
+                new Invoice("someUserId", 10, null), new Invoice("someOtherUserId", 50, null))));
+    }
+
+    @Test
+    void rejectsMissingOrInvalidFields() {
+        assertEquals("No invoices", MyFancyPdfInvoicesServlet.validate(Collections.emptyList()));
+        assertEquals("Invoice 1: user_id is missing", MyFancyPdfInvoicesServlet.validate(Arrays.asList(
+                new Invoice("someUserId", 20, null), new Invoice(" ", 20, null))));
+        assertEquals("Invoice 0: amount must be between 10 and 50", MyFancyPdfInvoicesServlet.validate(
+                Collections.singletonList(new Invoice("someUserId", null, null))));
+        assertEquals("Invoice 0: amount must be between 10 and 50", MyFancyPdfInvoicesServlet.validate(
+                Collections.singletonList(new Invoice("someUserId", 51, null))));
+    }
+}